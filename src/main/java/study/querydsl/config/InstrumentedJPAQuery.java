@@ -0,0 +1,157 @@
+package study.querydsl.config;
+
+import com.querydsl.core.NonUniqueResultException;
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 실행 메서드 전후에 QueryListener 를 호출하는 JPAQuery.
+ * select/from/where 등은 같은 인스턴스를 돌려주므로 체인 끝의 fetch 도 여기로 온다.
+ * iterate 는 close 할 때 afterQuery 를 부른다. 시간은 쿼리 실행과 hasNext/next 안에서 보낸 시간만 더하고
+ * 호출한 쪽이 행을 처리하는 시간은 뺀다.
+ */
+public class InstrumentedJPAQuery<T> extends JPAQuery<T> {
+
+    private final List<QueryListener> listeners;
+
+    public InstrumentedJPAQuery(EntityManager em, JPQLTemplates templates, List<QueryListener> listeners) {
+        super(em, templates);
+        this.listeners = listeners;
+    }
+
+    @Override
+    public List<T> fetch() {
+        return execute("fetch", super::fetch);
+    }
+
+    @Override
+    public T fetchOne() throws NonUniqueResultException {
+        return execute("fetchOne", super::fetchOne);
+    }
+
+    @Override
+    public long fetchCount() {
+        return execute("fetchCount", super::fetchCount);
+    }
+
+    @Override
+    public QueryResults<T> fetchResults() {
+        return execute("fetchResults", super::fetchResults);
+    }
+
+    @Override
+    public CloseableIterator<T> iterate() {
+        if (listeners.isEmpty()) {
+            return super.iterate();
+        }
+        for (QueryListener listener : listeners) {
+            listener.beforeQuery(this);
+        }
+        long start = System.nanoTime();
+        CloseableIterator<T> rows;
+        try {
+            rows = super.iterate();
+        } catch (RuntimeException | Error e) {
+            long elapsed = System.nanoTime() - start;
+            for (QueryListener listener : listeners) {
+                listener.afterQuery(getMetadata(), "iterate", elapsed, e);
+            }
+            throw e;
+        }
+        return new InstrumentedIterator(rows, System.nanoTime() - start);
+    }
+
+    private <R> R execute(String operation, Supplier<R> query) {
+        if (listeners.isEmpty()) {
+            return query.get();
+        }
+        for (QueryListener listener : listeners) {
+            listener.beforeQuery(this);
+        }
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return query.get();
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            for (QueryListener listener : listeners) {
+                listener.afterQuery(getMetadata(), operation, elapsed, error);
+            }
+        }
+    }
+
+    private class InstrumentedIterator implements CloseableIterator<T> {
+
+        private final CloseableIterator<T> rows;
+        private long elapsed;
+        private Throwable error;
+        private boolean closed;
+
+        InstrumentedIterator(CloseableIterator<T> rows, long elapsed) {
+            this.rows = rows;
+            this.elapsed = elapsed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return rows.hasNext();
+            } catch (RuntimeException | Error e) {
+                error = e;
+                throw e;
+            } finally {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public T next() {
+            long start = System.nanoTime();
+            try {
+                return rows.next();
+            } catch (RuntimeException | Error e) {
+                error = e;
+                throw e;
+            } finally {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void remove() {
+            rows.remove();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long start = System.nanoTime();
+            try {
+                rows.close();
+            } catch (RuntimeException | Error e) {
+                if (error == null) {
+                    error = e;
+                }
+                throw e;
+            } finally {
+                elapsed += System.nanoTime() - start;
+                for (QueryListener listener : listeners) {
+                    listener.afterQuery(getMetadata(), "iterate", elapsed, error);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.config;
+
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * select/selectFrom/from 이 모두 query() 를 거치므로 여기서 InstrumentedJPAQuery 를 만든다.
+ * update/delete/insert 절은 기본 구현을 그대로 쓴다.
+ */
+public class InstrumentedJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final JPQLTemplates templates;
+    private final List<QueryListener> listeners;
+
+    public InstrumentedJPAQueryFactory(EntityManager em, JPQLTemplates templates, List<QueryListener> listeners) {
+        super(templates, em);
+        this.em = em;
+        this.templates = templates;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new InstrumentedJPAQuery<Void>(em, templates, listeners);
+    }
+}
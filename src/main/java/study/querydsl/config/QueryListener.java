@@ -0,0 +1,23 @@
+package study.querydsl.config;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.impl.JPAQuery;
+
+/**
+ * 공유 JPAQueryFactory 로 만든 쿼리의 실행 전후에 호출된다.
+ * 실행 시간 측정, 힌트/주석 추가 등에 사용한다. 빈으로 등록하면 QuerydslConfig 가 모아서 연결한다.
+ */
+public interface QueryListener {
+
+    /**
+     * 실행 직전. 힌트를 넣는 등 쿼리를 바꿀 수 있다.
+     */
+    default void beforeQuery(JPAQuery<?> query) {
+    }
+
+    /**
+     * @param operation fetch, fetchOne, fetchCount, fetchResults, iterate (iterate 는 close 할 때 호출된다)
+     * @param error     성공했으면 null
+     */
+    void afterQuery(QueryMetadata metadata, String operation, long elapsedNanos, Throwable error);
+}
@@ -0,0 +1,54 @@
+package study.querydsl.config;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.SqlFunctionRegistry;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 모든 리포지토리가 함께 쓰는 JPAQueryFactory.
+ * EntityManager 는 트랜잭션 범위 프록시이므로 싱글톤으로 공유해도 된다.
+ * JPQLTemplates 빈을 등록하면 기본 템플릿(HQLTemplates) 대신 사용한다.
+ */
+@Configuration
+public class QuerydslConfig {
+
+    @Bean
+    public JPAQueryFactory jpaQueryFactory(EntityManager em,
+                                           ObjectProvider<JPQLTemplates> templates,
+                                           ObjectProvider<QueryListener> listeners) {
+        List<QueryListener> orderedListeners = listeners.orderedStream().collect(Collectors.toList());
+        return new InstrumentedJPAQueryFactory(em,
+                templates.getIfAvailable(() -> HQLTemplates.DEFAULT),
+                Collections.unmodifiableList(orderedListeners));
+    }
+
+    /**
+     * 정규화 컬럼과 DB 에 만들어 둔 표현식 인덱스를 등록한다.
+     * 예) postgres 에 create index .. on member (lower(username)) 를 만들었다면
+     * .expressionIndex(SqlFunction.LOWER, Member.class, "username")
+     */
+    @Bean
+    public SqlFunctionRegistry sqlFunctionRegistry(DataSourceProperties dataSourceProperties) {
+        return new SqlFunctionRegistry(dialect(dataSourceProperties))
+                .normalizedColumn(SqlFunctionRegistry.SqlFunction.LOWER, Member.class, "username", "usernameLower");
+    }
+
+    /**
+     * 기동 중에 커넥션을 열지 않도록 spring.datasource.url 로 DB 종류를 정한다.
+     */
+    static SqlFunctionRegistry.Dialect dialect(DataSourceProperties dataSourceProperties) {
+        return SqlFunctionRegistry.Dialect.of(DatabaseDriver.fromJdbcUrl(dataSourceProperties.determineUrl()).getId());
+    }
+}
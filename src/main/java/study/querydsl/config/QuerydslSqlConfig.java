@@ -0,0 +1,51 @@
+package study.querydsl.config;
+
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.MySQLTemplates;
+import com.querydsl.sql.PostgreSQLTemplates;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLTemplates;
+import com.querydsl.sql.SQLTemplatesRegistry;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * querydsl-sql 용 SQLQueryFactory.
+ * 커넥션은 현재 트랜잭션(JpaTransactionManager)이 잡고 있는 것을 쓰므로 트랜잭션 안에서만 사용할 수 있다.
+ * SQLTemplates 는 spring.datasource.url 로 고르고, 모르는 DB 일 때만 기동 중에 커넥션을 열어 메타데이터로 찾는다.
+ */
+@Configuration
+public class QuerydslSqlConfig {
+
+    @Bean
+    public SQLQueryFactory sqlQueryFactory(DataSource dataSource, DataSourceProperties dataSourceProperties)
+            throws SQLException {
+        com.querydsl.sql.Configuration configuration =
+                new com.querydsl.sql.Configuration(templates(dataSource, dataSourceProperties));
+        configuration.setExceptionTranslator(new SpringExceptionTranslator());
+        return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+    }
+
+    private static SQLTemplates templates(DataSource dataSource, DataSourceProperties dataSourceProperties)
+            throws SQLException {
+        switch (QuerydslConfig.dialect(dataSourceProperties)) {
+            case H2:
+                return new H2Templates();
+            case POSTGRESQL:
+                return new PostgreSQLTemplates();
+            case MYSQL:
+                return new MySQLTemplates();
+            default:
+                try (Connection connection = dataSource.getConnection()) {
+                    return new SQLTemplatesRegistry().getTemplates(connection.getMetaData());
+                }
+        }
+    }
+}
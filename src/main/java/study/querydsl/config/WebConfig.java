@@ -0,0 +1,50 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.controller.support.AdmissionControlInterceptor;
+import study.querydsl.controller.support.MemberTeamBinaryHttpMessageConverter;
+import study.querydsl.controller.support.SearchCostEstimator;
+import study.querydsl.controller.support.StripedRateLimiter;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final StripedRateLimiter searchRateLimiter;
+    //0 이면 토큰이 부족한 요청을 바로 거절한다. 기다리는 요청은 서블릿 스레드를 잡고 있으므로 max-queued 로 제한한다.
+    private final long maxWaitMillis;
+    private final Semaphore admissionQueue;
+
+    public WebConfig(@Value("${member.admission.stripes:256}") int stripes,
+                     @Value("${member.admission.capacity:100}") long capacity,
+                     @Value("${member.admission.refill-per-second:50}") double refillPerSecond,
+                     @Value("${member.admission.max-wait-ms:0}") long maxWaitMillis,
+                     @Value("${member.admission.max-queued:16}") int maxQueued) {
+        this.searchRateLimiter = new StripedRateLimiter(stripes, capacity, refillPerSecond);
+        this.maxWaitMillis = maxWaitMillis;
+        this.admissionQueue = new Semaphore(maxQueued);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        //Accept 를 명시한 경우에만 사용하도록 json 컨버터 뒤에 둔다.
+        converters.add(new MemberTeamBinaryHttpMessageConverter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        SearchCostEstimator costEstimator = new SearchCostEstimator();
+        registry.addInterceptor(new AdmissionControlInterceptor(searchRateLimiter, costEstimator, false,
+                        maxWaitMillis, admissionQueue))
+                .addPathPatterns("/v1/members", "/v1/members/**");
+        registry.addInterceptor(new AdmissionControlInterceptor(searchRateLimiter, costEstimator, true,
+                        maxWaitMillis, admissionQueue))
+                .addPathPatterns("/v2/members", "/v3/members");
+    }
+}
@@ -5,11 +5,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.controller.support.MemberTeamBinaryWriter;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchCoalescer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RequiredArgsConstructor
@@ -18,6 +24,7 @@ public class MemberController {
 
     private final MemberRepository memberRepository;
     private final MemberJpaRepository memberJpaRepository;
+    private final MemberSearchCoalescer memberSearchCoalescer;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
@@ -29,6 +36,24 @@ public class MemberController {
     }
     @GetMapping("/v3/members")
     public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition,pageable);
+        return memberSearchCoalescer.search(condition,pageable);
+    }
+    @GetMapping("/v1/members/columns")
+    public MemberTeamColumns searchMemberColumns(MemberSearchCondition condition) {
+        return memberRepository.searchColumns(condition);
+    }
+    @GetMapping(value = "/v1/members/stream", produces = MemberTeamBinaryWriter.MEDIA_TYPE_VALUE)
+    public StreamingResponseBody streamMembers(MemberSearchCondition condition) {
+        return out -> {
+            MemberTeamBinaryWriter writer = MemberTeamBinaryWriter.list(out);
+            memberRepository.searchEach(condition, dto -> {
+                try {
+                    writer.write(dto);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+        };
     }
 }
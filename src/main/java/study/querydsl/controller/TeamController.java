@@ -0,0 +1,41 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamRepository;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@RestController
+public class TeamController {
+
+    private static final int MAX_MEMBER_PAGE_SIZE = 1000;
+
+    private final TeamRepository teamRepository;
+
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats() {
+        return teamRepository.findTeamStats();
+    }
+
+    @GetMapping("/teams/{teamId}/members/count")
+    public long countMembers(@PathVariable Long teamId) {
+        return teamRepository.countMembers(teamId);
+    }
+
+    /**
+     * 응답의 마지막 memberId 를 afterId 로 넘겨 다음 페이지를 받는다.
+     */
+    @GetMapping("/teams/{teamId}/members")
+    public List<MemberTeamDto> teamMembers(@PathVariable Long teamId,
+                                           @RequestParam(required = false) Long afterId,
+                                           @RequestParam(defaultValue = "100") int size) {
+        return teamRepository.findMembersAfter(teamId, afterId, Math.max(1, Math.min(size, MAX_MEMBER_PAGE_SIZE)));
+    }
+}
@@ -1,13 +1,15 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
-import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
@@ -17,9 +19,15 @@ import javax.persistence.PersistenceContext;
 public class initMember {
 
     private final InitMemberService initMemberService;
-    @PostConstruct
+    private final TaskExecutor taskExecutor;
+
+    /**
+     * 기동을 막지 않도록 준비가 끝난 뒤 백그라운드에서 넣는다.
+     * 그 사이에 들어온 요청은 데이터가 일부만 보일 수 있다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
     public void init() {
-        initMemberService.init();
+        taskExecutor.execute(initMemberService::init);
     }
 
     @Component
@@ -0,0 +1,86 @@
+package study.querydsl.controller.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.security.Principal;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 검색 엔드포인트 앞에서 요청 비용만큼 클라이언트의 토큰을 차감하고, 부족하면 429 로 거절한다.
+ * - 클라이언트 키는 인증된 사용자, 없으면 접속 주소다. 클라이언트가 보낸 헤더는 믿지 않는다.
+ *   (프록시 뒤에서는 server.forward-headers-strategy 로 신뢰하는 프록시의 주소만 풀어서 쓴다)
+ * - maxWaitMillis 가 0 보다 크면 토큰이 부족한 요청을 그 시간까지 기다리게 한다.
+ *   기다리는 요청 수는 queue 허가 수로 제한하고, 자리가 없거나 시간 안에 토큰이 쌓이지 않으면 거절한다.
+ */
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private final StripedRateLimiter rateLimiter;
+    private final SearchCostEstimator costEstimator;
+    private final boolean paged;
+    private final long maxWaitMillis;
+    private final Semaphore queue;
+
+    public AdmissionControlInterceptor(StripedRateLimiter rateLimiter, SearchCostEstimator costEstimator, boolean paged) {
+        this(rateLimiter, costEstimator, paged, 0, new Semaphore(0));
+    }
+
+    public AdmissionControlInterceptor(StripedRateLimiter rateLimiter, SearchCostEstimator costEstimator, boolean paged,
+                                       long maxWaitMillis, Semaphore queue) {
+        this.rateLimiter = rateLimiter;
+        this.costEstimator = costEstimator;
+        this.paged = paged;
+        this.maxWaitMillis = maxWaitMillis;
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long cost = Math.min(costEstimator.estimate(request, paged), rateLimiter.getCapacity());
+        String clientKey = clientKey(request);
+        if (rateLimiter.tryAcquire(clientKey, cost)) {
+            return true;
+        }
+        if (maxWaitMillis > 0 && queue.tryAcquire()) {
+            try {
+                if (await(clientKey, cost)) {
+                    return true;
+                }
+            } finally {
+                queue.release();
+            }
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (rateLimiter.millisUntil(clientKey, cost) + 999) / 1000)));
+        return false;
+    }
+
+    /**
+     * 토큰이 쌓일 때까지 잔다. 다른 요청이 먼저 가져가면 다시 기다린다.
+     */
+    private boolean await(String clientKey, long cost) {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        while (true) {
+            long wait = rateLimiter.millisUntil(clientKey, cost);
+            if (System.currentTimeMillis() + wait > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.max(1, wait));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (rateLimiter.tryAcquire(clientKey, cost)) {
+                return true;
+            }
+        }
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : "addr:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.controller.support;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * List&lt;MemberTeamDto&gt;, Page&lt;MemberTeamDto&gt; 를 Accept: application/x-member-team 으로 요청하면
+ * json 대신 {@link MemberTeamBinaryWriter} 형식으로 응답한다.
+ */
+public class MemberTeamBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.valueOf(MemberTeamBinaryWriter.MEDIA_TYPE_VALUE);
+
+    public MemberTeamBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz) || Page.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        ResolvableType resolvableType = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        return supports(resolvableType.resolve(clazz))
+                && MemberTeamDto.class.isAssignableFrom(resolvableType.getGeneric(0).resolve(Object.class));
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected void writeInternal(Object target, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        OutputStream body = outputMessage.getBody();
+        MemberTeamBinaryWriter writer;
+        List<?> content;
+        if (target instanceof Page) {
+            Page<?> page = (Page<?>) target;
+            writer = MemberTeamBinaryWriter.page(body, page.getTotalElements(), page.getNumber(), page.getSize());
+            content = page.getContent();
+        } else {
+            writer = MemberTeamBinaryWriter.list(body);
+            content = (List<?>) target;
+        }
+        for (Object row : content) {
+            writer.write((MemberTeamDto) row);
+        }
+        writer.finish();
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("읽기는 지원하지 않습니다.", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("읽기는 지원하지 않습니다.", inputMessage);
+    }
+}
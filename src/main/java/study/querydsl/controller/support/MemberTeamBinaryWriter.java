@@ -0,0 +1,110 @@
+package study.querydsl.controller.support;
+
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MemberTeamDto 바이너리 인코딩 (application/x-member-team)
+ *
+ * <pre>
+ * header : 'M' 'T' version(1) kind(0 = list, 1 = page)
+ * page   : totalElements(varlong) number(varint) size(varint)        (kind = 1 일때만)
+ * row    : 1 memberId(varlong) username(string) age(zigzag varint) team
+ * end    : 0
+ * string : 0 = null, 그 외에는 (UTF-8 길이 + 1)(varint) + bytes
+ * team   : 0 = 팀 없음, 1..n = 이전에 나온 팀 번호, n + 1 = 새 팀 teamId(varlong) teamName(string)
+ * </pre>
+ * 필드 이름을 쓰지 않고 팀 이름은 처음 한번만 쓴다. 행 개수를 미리 몰라도 되므로 스트리밍으로 쓸 수 있다.
+ */
+public class MemberTeamBinaryWriter {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-member-team";
+
+    private static final int VERSION = 1;
+    private static final int KIND_LIST = 0;
+    private static final int KIND_PAGE = 1;
+    private static final int ROW = 1;
+    private static final int END = 0;
+
+    private final OutputStream out;
+    private final Map<Long, Integer> teamCodes = new HashMap<>();
+
+    private MemberTeamBinaryWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public static MemberTeamBinaryWriter list(OutputStream out) throws IOException {
+        MemberTeamBinaryWriter writer = new MemberTeamBinaryWriter(out);
+        writer.writeHeader(KIND_LIST);
+        return writer;
+    }
+
+    public static MemberTeamBinaryWriter page(OutputStream out, long totalElements, int number, int size) throws IOException {
+        MemberTeamBinaryWriter writer = new MemberTeamBinaryWriter(out);
+        writer.writeHeader(KIND_PAGE);
+        writer.writeVarLong(totalElements);
+        writer.writeVarLong(number);
+        writer.writeVarLong(size);
+        return writer;
+    }
+
+    public void write(MemberTeamDto dto) throws IOException {
+        out.write(ROW);
+        writeVarLong(dto.getMemberId() == null ? 0 : dto.getMemberId());
+        writeString(dto.getUsername());
+        writeVarLong(((dto.getAge() << 1) ^ (dto.getAge() >> 31)) & 0xFFFFFFFFL);
+        writeTeam(dto.getTeamId(), dto.getTeamName());
+    }
+
+    public void finish() throws IOException {
+        out.write(END);
+        out.flush();
+    }
+
+    private void writeHeader(int kind) throws IOException {
+        out.write('M');
+        out.write('T');
+        out.write(VERSION);
+        out.write(kind);
+    }
+
+    private void writeTeam(Long teamId, String teamName) throws IOException {
+        if (teamId == null) {
+            writeVarLong(0);
+            return;
+        }
+        Integer code = teamCodes.get(teamId);
+        if (code != null) {
+            writeVarLong(code);
+            return;
+        }
+        int newCode = teamCodes.size() + 1;
+        teamCodes.put(teamId, newCode);
+        writeVarLong(newCode);
+        writeVarLong(teamId);
+        writeString(teamName);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.controller.support;
+
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 검색 요청의 대략적인 비용.
+ * 페이징이 없는 조회는 조건이 약할수록 비싸고, 페이징 조회는 페이지 크기에 비례한다.
+ */
+public class SearchCostEstimator {
+
+    static final long UNBOUNDED_COST = 20;
+    static final long TEAM_COST = 5;
+    static final long AGE_RANGE_COST = 10;
+    static final long USERNAME_COST = 1;
+    static final int ROWS_PER_COST = 100;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    public long estimate(HttpServletRequest request, boolean paged) {
+        if (paged) {
+            int size = parseInt(request.getParameter("size"), DEFAULT_PAGE_SIZE);
+            return 1 + Math.max(0, size) / ROWS_PER_COST;
+        }
+        if (StringUtils.hasText(request.getParameter("username"))) {
+            return USERNAME_COST;
+        }
+        if (StringUtils.hasText(request.getParameter("teamName"))) {
+            return TEAM_COST;
+        }
+        if (StringUtils.hasText(request.getParameter("ageGoe")) || StringUtils.hasText(request.getParameter("ageLoe"))) {
+            return AGE_RANGE_COST;
+        }
+        return UNBOUNDED_COST;
+    }
+
+    private int parseInt(String value, int defaultValue) {
+        if (!StringUtils.hasText(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
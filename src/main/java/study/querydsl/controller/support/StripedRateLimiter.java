@@ -0,0 +1,38 @@
+package study.querydsl.controller.support;
+
+/**
+ * 클라이언트 키를 고정된 개수의 토큰 버킷(stripe)에 나눠 담는다.
+ * 클라이언트 수와 상관없이 메모리가 일정하고, 같은 stripe 에 걸린 클라이언트끼리만 버킷을 공유한다.
+ */
+public class StripedRateLimiter {
+
+    private final TokenBucket[] stripes;
+    private final int mask;
+
+    public StripedRateLimiter(int stripeCount, long capacity, double refillPerSecond) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new TokenBucket[size];
+        this.mask = size - 1;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new TokenBucket(capacity, refillPerSecond, now);
+        }
+    }
+
+    public boolean tryAcquire(String clientKey, long cost) {
+        return stripes[stripeOf(clientKey)].tryAcquire(cost, System.currentTimeMillis());
+    }
+
+    public long millisUntil(String clientKey, long cost) {
+        return stripes[stripeOf(clientKey)].millisUntil(cost, System.currentTimeMillis());
+    }
+
+    public long getCapacity() {
+        return stripes[0].getCapacity();
+    }
+
+    private int stripeOf(String clientKey) {
+        int h = clientKey.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.controller.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * lock 없이 CAS 로만 동작하는 토큰 버킷.
+ * 상태(남은 토큰, 마지막 충전 시각)를 long 하나에 담아서 한번에 비교/교체한다.
+ * 상위 20비트: 토큰 (최대 1,048,575), 하위 44비트: 마지막 충전 시각 (ms, 기준 시각으로부터)
+ */
+public class TokenBucket {
+
+    private static final int TIME_BITS = 44;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long MAX_TOKENS = (1L << (64 - TIME_BITS)) - 1;
+
+    private final long capacity;
+    private final double refillPerMilli;
+    private final double millisPerToken;
+    private final long epochMillis;
+    private final AtomicLong state;
+
+    public TokenBucket(long capacity, double refillPerSecond, long nowMillis) {
+        if (capacity <= 0 || capacity > MAX_TOKENS) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_TOKENS);
+        }
+        this.capacity = capacity;
+        this.refillPerMilli = refillPerSecond / 1000.0;
+        this.millisPerToken = 1000.0 / refillPerSecond;
+        this.epochMillis = nowMillis;
+        this.state = new AtomicLong(pack(capacity, 0));
+    }
+
+    /**
+     * cost 만큼 토큰이 있으면 차감하고 true, 없으면 차감하지 않고 false
+     */
+    public boolean tryAcquire(long cost, long nowMillis) {
+        long now = Math.max(0, nowMillis - epochMillis) & TIME_MASK;
+        while (true) {
+            long current = state.get();
+            long tokens = current >>> TIME_BITS;
+            long last = current & TIME_MASK;
+
+            long elapsed = Math.max(0, now - last);
+            long refill = (long) (elapsed * refillPerMilli);
+            long available = Math.min(capacity, tokens + refill);
+            long refillTime = refillTime(last, now, refill, available);
+
+            if (available < cost) {
+                if (refill > 0 && !state.compareAndSet(current, pack(available, refillTime))) {
+                    continue;
+                }
+                return false;
+            }
+            if (state.compareAndSet(current, pack(available - cost, refillTime))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * cost 만큼 쌓이기까지 남은 시간(ms). 지금 있으면 0
+     */
+    public long millisUntil(long cost, long nowMillis) {
+        long now = Math.max(0, nowMillis - epochMillis) & TIME_MASK;
+        long current = state.get();
+        long tokens = current >>> TIME_BITS;
+        long last = current & TIME_MASK;
+        double available = Math.min(capacity, tokens + Math.max(0, now - last) * refillPerMilli);
+        return available >= cost ? 0 : (long) Math.ceil((cost - available) * millisPerToken);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 충전한 토큰 수만큼의 시간만 마지막 충전 시각에 더한다. 남은 시간(소수점 아래 토큰)은 다음 충전에 넘긴다.
+     * 올림해서 설정한 속도보다 많이 주지 않는다. 가득 찼으면 넘치는 시간은 버린다.
+     */
+    private long refillTime(long last, long now, long refill, long available) {
+        if (available == capacity) {
+            return now;
+        }
+        if (refill == 0) {
+            return last;
+        }
+        return Math.min(now, last + (long) Math.ceil(refill * millisPerToken));
+    }
+
+    private static long pack(long tokens, long time) {
+        return (tokens << TIME_BITS) | (time & TIME_MASK);
+    }
+}
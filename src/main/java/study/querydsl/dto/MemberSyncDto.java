@@ -0,0 +1,17 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * upsertMembers 입력. username 이 키이고 teamId 가 null 이면 팀을 뺀다.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberSyncDto {
+    private String username;
+    private int age;
+    private Long teamId;
+}
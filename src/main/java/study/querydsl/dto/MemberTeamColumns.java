@@ -0,0 +1,98 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MemberTeamDto 를 행 단위 객체 대신 컬럼 배열로 담는다.
+ * teamName 은 사전(teamIds, teamNames)으로 인코딩하고 각 행은 teamCodes 로 사전 위치를 가리킨다. (-1 이면 팀 없음)
+ */
+@Getter
+public class MemberTeamColumns {
+
+    public static final int NO_TEAM = -1;
+
+    private final int size;
+    private final long[] memberIds;
+    private final String[] usernames;
+    private final int[] ages;
+    private final int[] teamCodes;
+    private final long[] teamIds;
+    private final String[] teamNames;
+
+    private MemberTeamColumns(Builder builder) {
+        this.size = builder.size;
+        this.memberIds = Arrays.copyOf(builder.memberIds, builder.size);
+        this.usernames = Arrays.copyOf(builder.usernames, builder.size);
+        this.ages = Arrays.copyOf(builder.ages, builder.size);
+        this.teamCodes = Arrays.copyOf(builder.teamCodes, builder.size);
+        this.teamIds = Arrays.copyOf(builder.teamIds, builder.teamCount);
+        this.teamNames = Arrays.copyOf(builder.teamNames, builder.teamCount);
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public static class Builder {
+        private int size;
+        private long[] memberIds;
+        private String[] usernames;
+        private int[] ages;
+        private int[] teamCodes;
+
+        private int teamCount;
+        private long[] teamIds = new long[8];
+        private String[] teamNames = new String[8];
+        private final Map<Long, Integer> teamCodeById = new HashMap<>();
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            this.memberIds = new long[capacity];
+            this.usernames = new String[capacity];
+            this.ages = new int[capacity];
+            this.teamCodes = new int[capacity];
+        }
+
+        public void add(long memberId, String username, int age, long teamId, boolean hasTeam, String teamName) {
+            if (size == memberIds.length) {
+                grow();
+            }
+            memberIds[size] = memberId;
+            usernames[size] = username;
+            ages[size] = age;
+            teamCodes[size] = hasTeam ? teamCode(teamId, teamName) : NO_TEAM;
+            size++;
+        }
+
+        public MemberTeamColumns build() {
+            return new MemberTeamColumns(this);
+        }
+
+        private int teamCode(long teamId, String teamName) {
+            Integer code = teamCodeById.get(teamId);
+            if (code != null) {
+                return code;
+            }
+            if (teamCount == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, teamCount * 2);
+                teamNames = Arrays.copyOf(teamNames, teamCount * 2);
+            }
+            teamIds[teamCount] = teamId;
+            teamNames[teamCount] = teamName;
+            teamCodeById.put(teamId, teamCount);
+            return teamCount++;
+        }
+
+        private void grow() {
+            int capacity = memberIds.length * 2;
+            memberIds = Arrays.copyOf(memberIds, capacity);
+            usernames = Arrays.copyOf(usernames, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            teamCodes = Arrays.copyOf(teamCodes, capacity);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package study.querydsl.dto;
+
+import lombok.Value;
+
+@Value
+public class UpsertResult {
+    long inserted;
+    long updated;
+}
@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+/**
+ * username 검색 방식. 지정하지 않으면 EXACT
+ * 대소문자 무시 검색은 인덱스가 걸린 소문자 컬럼(username_lower)을 사용하고,
+ * 앞부분 일치는 like 'x%' 라서 인덱스를 탈 수 있다.
+ */
+public enum UsernameMatch {
+    EXACT,
+    PREFIX,
+    IGNORE_CASE,
+    IGNORE_CASE_PREFIX;
+
+    public boolean isIgnoreCase() {
+        return this == IGNORE_CASE || this == IGNORE_CASE_PREFIX;
+    }
+
+    public boolean isPrefix() {
+        return this == PREFIX || this == IGNORE_CASE_PREFIX;
+    }
+
+    public static UsernameMatch orDefault(UsernameMatch match) {
+        return match != null ? match : EXACT;
+    }
+}
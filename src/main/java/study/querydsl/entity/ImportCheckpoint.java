@@ -0,0 +1,56 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * 가져오기(import)에서 커밋된 배치. 배치의 회원과 같은 트랜잭션에 저장하므로
+ * 다시 실행하면 여기 있는 배치만 건너뛰고 나머지를 이어서 넣는다.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_import_checkpoint", columnNames = {"import_key", "batch_no"}))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ImportCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "import_checkpoint_seq")
+    @SequenceGenerator(name = "import_checkpoint_seq", sequenceName = "import_checkpoint_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "import_key", nullable = false)
+    private String importKey;
+
+    @Column(name = "batch_no", nullable = false)
+    private long batchNo;
+
+    //배치 경계가 batchSize 줄 단위이므로 다시 실행할 때 같은 값을 써야 한다.
+    @Column(name = "batch_size", nullable = false)
+    private int batchSize;
+
+    //다시 실행할 때 같은 배치의 줄 수가 다르면 입력이 바뀐 것이므로 건너뛰지 않는다.
+    @Column(name = "line_count", nullable = false)
+    private int lineCount;
+
+    //헤더, 빈 줄을 뺀 저장한 회원 수
+    @Column(name = "record_count", nullable = false)
+    private int recordCount;
+
+    public ImportCheckpoint(String importKey, long batchNo, int batchSize, int lineCount, int recordCount) {
+        this.importKey = importKey;
+        this.batchNo = batchNo;
+        this.batchSize = batchSize;
+        this.lineCount = lineCount;
+        this.recordCount = recordCount;
+    }
+}
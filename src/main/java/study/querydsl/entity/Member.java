@@ -1,22 +1,43 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
 import javax.persistence.*;
+import java.util.Locale;
+
 @Entity
+//username 은 upsertMembers 의 키라서 유니크하다. (null 은 여러개 가능)
+@Table(indexes = {
+        @Index(name = "uk_member_username", columnList = "username", unique = true),
+        @Index(name = "idx_member_username_lower", columnList = "username_lower"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_id", columnList = "team_id, member_id")
+})
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
+    //시퀀스를 한번 읽으면 50개를 스레드별로 나눠 쓴다. (hibernate.id.optimizer.pooled.preferred: pooled-lotl)
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
+    //대소문자 무시 검색용. username 을 바꾸면 같이 바뀐다.
+    @Setter(AccessLevel.NONE)
+    @Column(name = "username_lower")
+    private String usernameLower;
 
     private int age;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
+    //동시에 같은 회원을 고치면 나중 커밋이 ObjectOptimisticLockingFailureException 으로 실패한다. (@RetryOnConflict 로 재시도)
+    //벌크 update 는 직접 version + 1 을 해야 한다.
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
     public Member(String username) {
         this(username, 0);
     }
@@ -25,13 +46,37 @@ public class Member {
     }
     public Member(String username, int age, Team team) {
         this.username = username;
+        this.usernameLower = normalize(username);
         this.age = age;
         if (team != null) {
             changeTeam(team);
         }
     }
+    /**
+     * 연관관계의 주인은 member.team 이므로 팀의 members 컬렉션은 이미 읽혀 있을 때만 맞춰준다.
+     * 읽히지 않은 컬렉션(프록시 팀 포함)은 다음에 읽을 때 DB 에서 올바른 값을 가져온다.
+     * 팀 통계는 커밋 직전에 TeamStatsUpdater 가 반영한다.
+     */
     public void changeTeam(Team team) {
+        if (this.team != null && isMembersLoaded(this.team)) {
+            this.team.getMembers().remove(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        if (isMembersLoaded(team)) {
+            team.getMembers().add(this);
+        }
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameLower = normalize(username);
+    }
+
+    public static String normalize(String username) {
+        return username != null ? username.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static boolean isMembersLoaded(Team team) {
+        return Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers());
     }
-}
\ No newline at end of file
+}
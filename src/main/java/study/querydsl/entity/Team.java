@@ -1,6 +1,9 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
+import org.hibernate.annotations.OptimisticLock;
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,12 +13,26 @@ import java.util.List;
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+    @SequenceGenerator(name = "team_seq", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
     private String name;
+    //size(), contains() 는 count/exists 쿼리로 처리하고 전체를 읽지 않는다.
+    //회원이 많은 팀은 순회하지 말고 TeamRepository 의 countMembers, findMembersAfter 를 사용한다.
     @OneToMany(mappedBy = "team")
+    @LazyCollection(LazyCollectionOption.EXTRA)
     List<Member> members = new ArrayList<>();
+    //member 전체를 읽지 않고 통계를 조회하기 위해 팀에 미리 집계해둔다.
+    //통계는 증분 update 로만 바뀌고 version 에 포함하지 않는다. 같은 팀의 다른 회원을 동시에 고쳐도 충돌하지 않는다.
+    @Embedded
+    @OptimisticLock(excluded = true)
+    @Setter(AccessLevel.NONE)
+    private TeamStats stats = TeamStats.empty();
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
     public Team(String name) {
         this.name = name;
     }
@@ -0,0 +1,40 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+/**
+ * 팀별 나이 통계 (count, sum, min, max)
+ * 엔티티로는 쓰지 않는다. (updatable = false) 회원 insert/update/delete 를 TeamStatsUpdater 가 트랜잭션 동안 모아서
+ * 커밋 직전에 member_count = member_count + ? 같은 update 로 팀마다 한번 반영하므로 같은 팀 회원을 동시에 고쳐도 충돌하지 않는다.
+ * min/max 를 알 수 없게 되거나 벌크 연산이 지나가면 stale 로 표시하고, stale 인 동안은 증분을 버린다.
+ * stale 인 팀은 조회 시점에 팀 단위로 다시 계산한다. (TeamRepositoryImpl.findTeamStats)
+ */
+@Embeddable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamStats {
+
+    @Column(name = "member_count", nullable = false, updatable = false)
+    private long memberCount;
+    @Column(name = "age_sum", nullable = false, updatable = false)
+    private long ageSum;
+    @Column(name = "age_min", updatable = false)
+    private Integer ageMin;
+    @Column(name = "age_max", updatable = false)
+    private Integer ageMax;
+    @Column(name = "stats_stale", nullable = false, updatable = false)
+    private boolean stale;
+
+    public static TeamStats empty() {
+        return new TeamStats();
+    }
+
+    public double getAgeAvg() {
+        return memberCount == 0 ? 0 : (double) ageSum / memberCount;
+    }
+}
@@ -0,0 +1,108 @@
+package study.querydsl.importer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 한 줄을 MemberRecord 로 바꾼다. 헤더나 빈 줄이면 null
+ */
+public enum ImportFormat {
+
+    /**
+     * username,age,teamName (첫 줄 헤더). teamName 은 비워도 된다. 쉼표가 들어간 값은 "..." 로 감싼다.
+     */
+    CSV {
+        @Override
+        MemberRecord parse(long lineNo, String line) {
+            if (line.trim().isEmpty() || line.startsWith("username,")) {
+                return null;
+            }
+            List<String> fields = splitCsv(line);
+            if (fields.size() < 2) {
+                throw new IllegalArgumentException("line " + lineNo + ": username,age,teamName 형식이 아닙니다: " + line);
+            }
+            String teamName = fields.size() > 2 && !fields.get(2).isEmpty() ? fields.get(2) : null;
+            return new MemberRecord(lineNo, requireUsername(lineNo, fields.get(0)),
+                    parseAge(lineNo, fields.get(1)), teamName, null);
+        }
+    },
+
+    /**
+     * {"username":"member1","age":10,"teamName":"teamA"}. teamName 은 없어도 된다.
+     */
+    NDJSON {
+        @Override
+        MemberRecord parse(long lineNo, String line) {
+            if (line.trim().isEmpty()) {
+                return null;
+            }
+            try {
+                JsonNode node = OBJECT_MAPPER.readTree(line);
+                JsonNode username = node.get("username");
+                if (username == null || !username.isTextual()) {
+                    throw new IllegalArgumentException("line " + lineNo + ": username 이 없습니다: " + line);
+                }
+                JsonNode age = node.get("age");
+                if (age == null || !age.isIntegralNumber() || !age.canConvertToInt()) {
+                    throw new IllegalArgumentException("line " + lineNo + ": age 가 숫자가 아닙니다: " + age);
+                }
+                JsonNode teamName = node.get("teamName");
+                return new MemberRecord(lineNo,
+                        requireUsername(lineNo, username.asText()),
+                        age.intValue(),
+                        teamName == null || teamName.isNull() ? null : teamName.asText(),
+                        null);
+            } catch (IOException e) {
+                throw new UncheckedIOException("line " + lineNo + ": JSON 형식이 아닙니다", e);
+            }
+        }
+    };
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    abstract MemberRecord parse(long lineNo, String line);
+
+    private static String requireUsername(long lineNo, String value) {
+        if (value.trim().isEmpty()) {
+            throw new IllegalArgumentException("line " + lineNo + ": username 이 비어 있습니다");
+        }
+        return value;
+    }
+
+    private static int parseAge(long lineNo, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("line " + lineNo + ": age 가 숫자가 아닙니다: " + value, e);
+        }
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
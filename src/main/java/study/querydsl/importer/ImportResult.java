@@ -0,0 +1,18 @@
+package study.querydsl.importer;
+
+import lombok.Value;
+
+@Value
+public class ImportResult {
+    String importKey;
+    //이번 실행에서 넣은 회원 수
+    long imported;
+    //이전 실행에서 이미 커밋되어 건너뛴 배치 수
+    long skippedBatches;
+    int teams;
+    long elapsedMillis;
+
+    public double recordsPerSecond() {
+        return elapsedMillis == 0 ? imported : imported * 1000.0 / elapsedMillis;
+    }
+}
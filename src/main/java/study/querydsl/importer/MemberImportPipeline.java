@@ -0,0 +1,438 @@
+package study.querydsl.importer;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.ImportCheckpoint;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.TeamStatsUpdater;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QImportCheckpoint.importCheckpoint;
+
+/**
+ * 회원 파일을 read -> parse -> resolve(팀 이름 -> id) -> write 단계로 나눠 넣는다.
+ * - 단계마다 스레드를 따로 두고 크기가 정해진 큐로 잇는다. 뒤 단계가 밀리면 앞 단계가 put 에서 기다린다.
+ * - batchSize 줄이 한 배치이고, write 는 배치마다 트랜잭션 하나로 회원과 ImportCheckpoint 를 같이 커밋한다.
+ *   같은 importKey 로 다시 실행하면 커밋된 배치는 건너뛴다. (배치 순서는 보장하지 않는다)
+ * - 회원은 changeTeam 없이 team_id 만 넣고, 쓴 팀의 통계는 stale 로 표시한다.
+ *   TeamStatsUpdater 증분도 끄므로 write 트랜잭션은 team row 를 건드리지 않고 insert 만 JDBC 배치로 보낸다.
+ * - write 스레드 기본값은 코어 수와 커넥션 풀 절반 중 작은 값이다. 나머지 커넥션은 서비스 요청용으로 남긴다.
+ * 단계별 처리량은 member.import.records(stage), 배치 처리 시간은 member.import.batch(stage),
+ * 큐가 차서 기다린 시간은 member.import.backpressure(stage) 로 남는다.
+ */
+@Slf4j
+@Component
+public class MemberImportPipeline {
+
+    private static final String READ = "read";
+    private static final String PARSE = "parse";
+    private static final String RESOLVE = "resolve";
+    private static final String WRITE = "write";
+    //실패한 뒤 남은 단계가 끝나기를 기다리는 시간. 넘으면 기다리지 않고 실패를 던진다. (daemon 스레드다)
+    private static final long FAILURE_GRACE_SECONDS = 5;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<MeterRegistry> registry;
+    private final TeamStatsUpdater teamStatsUpdater;
+    private final int batchSize;
+    private final int parseThreads;
+    private final int resolveThreads;
+    private final int writerThreads;
+    private final int queueCapacity;
+
+    public MemberImportPipeline(EntityManager em,
+                                JPAQueryFactory queryFactory,
+                                TransactionTemplate transactionTemplate,
+                                ObjectProvider<MeterRegistry> registry,
+                                TeamStatsUpdater teamStatsUpdater,
+                                @Value("${member.import.batch-size:500}") int batchSize,
+                                @Value("${member.import.parse-threads:0}") int parseThreads,
+                                @Value("${member.import.resolve-threads:2}") int resolveThreads,
+                                @Value("${member.import.writer-threads:0}") int writerThreads,
+                                @Value("${member.import.queue-capacity:8}") int queueCapacity,
+                                @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = transactionTemplate;
+        this.registry = registry;
+        this.teamStatsUpdater = teamStatsUpdater;
+        this.batchSize = batchSize;
+        this.parseThreads = parseThreads > 0 ? parseThreads : cores;
+        this.resolveThreads = Math.max(1, resolveThreads);
+        this.writerThreads = writerThreads > 0 ? writerThreads : Math.max(1, Math.min(cores, poolSize / 2));
+        this.queueCapacity = queueCapacity;
+    }
+
+    public ImportResult importFile(String importKey, Path file, ImportFormat format) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importLines(importKey, reader, format);
+        }
+    }
+
+    /**
+     * @param importKey 다시 실행할 때 이어서 넣기 위한 키. 파일마다 달라야 한다. (예: 파일 이름 + 날짜)
+     */
+    public ImportResult importLines(String importKey, BufferedReader reader, ImportFormat format) {
+        long start = System.currentTimeMillis();
+        Map<Long, Integer> committed = committedBatches(importKey);
+        TeamNameCache teams = new TeamNameCache(em, queryFactory, transactionTemplate);
+        teams.preload();
+        Metrics metrics = new Metrics(registry.getIfAvailable(SimpleMeterRegistry::new));
+
+        BlockingQueue<Batch<String>> lines = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch<MemberRecord>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch<MemberRecord>> resolved = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong imported = new AtomicLong();
+
+        List<ExecutorService> stages = new ArrayList<>();
+        ExecutorService readStage = stage(stages, READ, 1);
+        ExecutorService parseStage = stage(stages, PARSE, parseThreads);
+        ExecutorService resolveStage = stage(stages, RESOLVE, resolveThreads);
+        ExecutorService writeStage = stage(stages, WRITE, writerThreads);
+
+        readStage.execute(guarded(failure, stages,
+                () -> read(reader, committed, lines, skipped, metrics),
+                () -> end(lines, parseThreads, failure)));
+        start(parseStage, parseThreads, lines, parsed, resolveThreads, failure, stages, metrics, PARSE,
+                batch -> batch.map(parseLines(format, batch)));
+        start(resolveStage, resolveThreads, parsed, resolved, writerThreads, failure, stages, metrics, RESOLVE,
+                batch -> batch.map(teams.resolve(batch.items)));
+        start(writeStage, writerThreads, resolved, null, 0, failure, stages, metrics, WRITE, batch -> {
+            write(importKey, batch);
+            imported.addAndGet(batch.items.size());
+            return null;
+        });
+
+        try {
+            for (ExecutorService stage : stages) {
+                stage.shutdown();
+            }
+            awaitStages(importKey, stages, failure, imported);
+        } catch (InterruptedException e) {
+            //stage 스레드가 끝 표시를 put 하지 않도록 interrupt 전에 실패를 남긴다.
+            failure.compareAndSet(null, e);
+            shutdownNow(stages);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member import interrupted: " + importKey, e);
+        }
+
+        //실패해도 커밋된 배치의 팀은 통계가 틀리지 않게 다시 표시한다.
+        teams.markTouchedStale();
+        if (failure.get() != null) {
+            throw new IllegalStateException("member import failed: " + importKey
+                    + " (imported=" + imported.get() + ", 같은 importKey 로 다시 실행하면 이어서 넣는다)", failure.get());
+        }
+        ImportResult result = new ImportResult(importKey, imported.get(), skipped.get(), teams.touchedCount(),
+                System.currentTimeMillis() - start);
+        log.info("member import done. {} ({} records/s)", result, Math.round(result.recordsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 모든 단계가 끝날 때까지 기다린다. 실패가 생기면 남은 단계를 멈추고 FAILURE_GRACE_SECONDS 만 더 기다린다.
+     */
+    private static void awaitStages(String importKey, List<ExecutorService> stages,
+                                    AtomicReference<Throwable> failure, AtomicLong imported) throws InterruptedException {
+        for (ExecutorService stage : stages) {
+            while (!stage.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (failure.get() != null) {
+                    shutdownNow(stages);
+                    for (ExecutorService remaining : stages) {
+                        if (!remaining.awaitTermination(FAILURE_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                            log.warn("member import {} failed, stage did not stop in {}s", importKey, FAILURE_GRACE_SECONDS);
+                        }
+                    }
+                    return;
+                }
+                log.debug("member import {} waiting. imported={}", importKey, imported.get());
+            }
+        }
+    }
+
+    /**
+     * @return 커밋된 batchNo 별 줄 수
+     */
+    private Map<Long, Integer> committedBatches(String importKey) {
+        List<Integer> sizes = queryFactory
+                .select(importCheckpoint.batchSize)
+                .distinct()
+                .from(importCheckpoint)
+                .where(importCheckpoint.importKey.eq(importKey))
+                .fetch();
+        if (sizes.stream().anyMatch(size -> size != batchSize)) {
+            throw new IllegalStateException("import " + importKey + " was started with batch-size " + sizes
+                    + ", current batch-size is " + batchSize);
+        }
+        Map<Long, Integer> committed = new HashMap<>();
+        for (Tuple row : queryFactory
+                .select(importCheckpoint.batchNo, importCheckpoint.lineCount)
+                .from(importCheckpoint)
+                .where(importCheckpoint.importKey.eq(importKey))
+                .fetch()) {
+            committed.put(row.get(importCheckpoint.batchNo), row.get(importCheckpoint.lineCount));
+        }
+        return committed;
+    }
+
+    /**
+     * 배치 경계는 빈 줄, 헤더를 포함한 줄 번호로 정하므로 다시 실행해도 같은 배치가 된다.
+     */
+    private void read(BufferedReader reader, Map<Long, Integer> committed, BlockingQueue<Batch<String>> out,
+                      AtomicLong skipped, Metrics metrics) throws InterruptedException {
+        long lineNo = 0;
+        long batchNo = 0;
+        List<String> chunk = new ArrayList<>(batchSize);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunk.add(line);
+                lineNo++;
+                if (chunk.size() == batchSize) {
+                    emit(new Batch<>(batchNo++, lineNo - chunk.size() + 1, chunk), committed, out, skipped, metrics);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                emit(new Batch<>(batchNo, lineNo - chunk.size() + 1, chunk), committed, out, skipped, metrics);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 커밋된 배치는 줄 수가 같을 때만 건너뛴다. 다르면 (파일 끝이 늘었거나 바뀐 경우) 이미 넣은 회원과 겹치므로 중단한다.
+     */
+    private void emit(Batch<String> batch, Map<Long, Integer> committed, BlockingQueue<Batch<String>> out,
+                      AtomicLong skipped, Metrics metrics) throws InterruptedException {
+        Integer committedLines = committed.get(batch.batchNo);
+        if (committedLines != null) {
+            if (committedLines != batch.items.size()) {
+                throw new IllegalStateException("batch " + batch.batchNo + " (line " + batch.firstLineNo
+                        + "~) was committed with " + committedLines + " lines, but now has " + batch.items.size()
+                        + " lines. 입력이 바뀌었으면 다른 importKey 를 쓴다");
+            }
+            skipped.incrementAndGet();
+            return;
+        }
+        metrics.records(READ).increment(batch.items.size());
+        put(out, batch, metrics, READ);
+    }
+
+    private static List<MemberRecord> parseLines(ImportFormat format, Batch<String> batch) {
+        List<MemberRecord> records = new ArrayList<>(batch.items.size());
+        for (int i = 0; i < batch.items.size(); i++) {
+            MemberRecord record = format.parse(batch.firstLineNo + i, batch.items.get(i));
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private void write(String importKey, Batch<MemberRecord> batch) {
+        //팀은 stale 로 표시하고 나중에 다시 계산하므로 증분을 만들지 않는다. (커밋까지 감싸야 한다)
+        teamStatsUpdater.withoutIncrements(() -> transactionTemplate.executeWithoutResult(status -> {
+            for (MemberRecord record : batch.items) {
+                Member member = new Member(record.getUsername(), record.getAge());
+                if (record.getTeamId() != null) {
+                    //changeTeam 을 쓰면 팀을 읽고 통계를 고치므로 여러 writer 가 같은 팀 row 에서 충돌한다.
+                    member.setTeam(em.getReference(Team.class, record.getTeamId()));
+                }
+                em.persist(member);
+            }
+            em.persist(new ImportCheckpoint(importKey, batch.batchNo, batchSize, batch.lineCount, batch.items.size()));
+        }));
+    }
+
+    private <I, O> void start(ExecutorService stage, int threads,
+                              BlockingQueue<Batch<I>> in, BlockingQueue<Batch<O>> out, int downstreamThreads,
+                              AtomicReference<Throwable> failure, List<ExecutorService> stages,
+                              Metrics metrics, String name, Function<Batch<I>, Batch<O>> work) {
+        AtomicInteger running = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            stage.execute(guarded(failure, stages, () -> {
+                Batch<I> batch;
+                while (!(batch = in.take()).isEnd()) {
+                    long begin = System.nanoTime();
+                    Batch<O> result = work.apply(batch);
+                    metrics.batch(name).record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+                    metrics.records(name).increment(batch.items.size());
+                    if (out != null) {
+                        put(out, result, metrics, name);
+                    }
+                }
+            }, () -> {
+                //마지막 스레드가 다음 단계 스레드 수만큼 끝 표시를 넣는다.
+                if (running.decrementAndGet() == 0 && out != null) {
+                    end(out, downstreamThreads, failure);
+                }
+            }));
+        }
+    }
+
+    private static <T> void put(BlockingQueue<Batch<T>> out, Batch<T> batch, Metrics metrics, String stage)
+            throws InterruptedException {
+        if (out.offer(batch)) {
+            return;
+        }
+        long begin = System.nanoTime();
+        out.put(batch);
+        metrics.backpressure(stage).record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 실패했으면 받을 스레드가 이미 멈췄으므로 끝 표시를 넣지 않는다. (큐가 차 있으면 put 에서 끝나지 않는다)
+     */
+    private static <T> void end(BlockingQueue<Batch<T>> out, int count, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            if (failure.get() != null || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            out.put(Batch.end());
+        }
+    }
+
+    /**
+     * 한 단계라도 실패하면 모든 단계를 interrupt 해서 큐에서 기다리는 스레드까지 멈춘다.
+     * done(끝 표시)은 실패를 남긴 뒤에 실행하므로 실패한 단계는 끝 표시를 보내지 않는다.
+     */
+    private static Runnable guarded(AtomicReference<Throwable> failure, List<ExecutorService> stages,
+                                    StageTask task, StageTask done) {
+        return () -> {
+            try {
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    log.warn("member import stage {} failed", Thread.currentThread().getName(), e);
+                }
+                shutdownNow(stages);
+            } finally {
+                try {
+                    done.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+    }
+
+    private static void shutdownNow(List<ExecutorService> stages) {
+        for (ExecutorService stage : stages) {
+            stage.shutdownNow();
+        }
+    }
+
+    private static ExecutorService stage(List<ExecutorService> stages, String name, int threads) {
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "member-import-" + name + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads, factory);
+        stages.add(executor);
+        return executor;
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws InterruptedException;
+    }
+
+    private static final class Batch<T> {
+        private static final Batch<?> END = new Batch<>(-1, -1, 0, Collections.emptyList());
+
+        final long batchNo;
+        final long firstLineNo;
+        //읽은 줄 수. parse 뒤에는 items 가 헤더, 빈 줄만큼 줄어든다.
+        final int lineCount;
+        final List<T> items;
+
+        Batch(long batchNo, long firstLineNo, int lineCount, List<T> items) {
+            this.batchNo = batchNo;
+            this.firstLineNo = firstLineNo;
+            this.lineCount = lineCount;
+            this.items = items;
+        }
+
+        Batch(long batchNo, long firstLineNo, List<T> lines) {
+            this(batchNo, firstLineNo, lines.size(), lines);
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Batch<T> end() {
+            return (Batch<T>) END;
+        }
+
+        boolean isEnd() {
+            return this == END;
+        }
+
+        <R> Batch<R> map(List<R> mapped) {
+            return new Batch<>(batchNo, firstLineNo, lineCount, mapped);
+        }
+    }
+
+    private static final class Metrics {
+        private final MeterRegistry registry;
+
+        Metrics(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        Counter records(String stage) {
+            return Counter.builder("member.import.records").tag("stage", stage).register(registry);
+        }
+
+        Timer batch(String stage) {
+            return Timer.builder("member.import.batch").tag("stage", stage).register(registry);
+        }
+
+        Timer backpressure(String stage) {
+            return Timer.builder("member.import.backpressure").tag("stage", stage).register(registry);
+        }
+    }
+}
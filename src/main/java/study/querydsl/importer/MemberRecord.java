@@ -0,0 +1,19 @@
+package study.querydsl.importer;
+
+import lombok.Value;
+
+/**
+ * 가져올 회원 한 줄. teamId 는 팀 이름을 찾은 뒤에 채운다.
+ */
+@Value
+public class MemberRecord {
+    long lineNo;
+    String username;
+    int age;
+    String teamName;
+    Long teamId;
+
+    public MemberRecord withTeamId(Long teamId) {
+        return new MemberRecord(lineNo, username, age, teamName, teamId);
+    }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.importer;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 가져오기 한번 동안 쓰는 팀 이름 -> id 캐시. 시작할 때 전체 팀을 한번 읽고, 없는 이름만 팀을 만든다.
+ * 같은 이름의 팀이 여럿이면 id 가 가장 작은 팀을 쓴다.
+ * 처음 나온 팀은 회원을 넣기 전에 통계를 stale 로 표시한다. (회원은 changeTeam 없이 team_id 만 넣는다)
+ */
+class TeamNameCache {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final Set<Long> touched = ConcurrentHashMap.newKeySet();
+
+    TeamNameCache(EntityManager em, JPAQueryFactory queryFactory, TransactionTemplate transactionTemplate) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    void preload() {
+        List<Tuple> rows = transactionTemplate.execute(status -> queryFactory
+                .select(team.name, team.id.min())
+                .from(team)
+                .where(team.name.isNotNull())
+                .groupBy(team.name)
+                .fetch());
+        for (Tuple row : rows) {
+            ids.put(row.get(team.name), row.get(team.id.min()));
+        }
+    }
+
+    /**
+     * 배치의 팀 이름을 id 로 바꾼다. 이번 가져오기에서 처음 나온 팀은 통계를 stale 로 표시한다.
+     */
+    List<MemberRecord> resolve(List<MemberRecord> records) {
+        List<MemberRecord> resolved = new ArrayList<>(records.size());
+        List<Long> firstSeen = new ArrayList<>();
+        for (MemberRecord record : records) {
+            Long teamId = idOf(record.getTeamName());
+            if (teamId != null && touched.add(teamId)) {
+                firstSeen.add(teamId);
+            }
+            resolved.add(record.withTeamId(teamId));
+        }
+        if (!firstSeen.isEmpty()) {
+            markStatsStale(firstSeen);
+        }
+        return resolved;
+    }
+
+    /**
+     * 가져오는 중에 통계 조회로 stale 이 풀렸을 수 있으므로 끝나고 이번에 쓴 팀을 다시 표시한다.
+     */
+    void markTouchedStale() {
+        if (!touched.isEmpty()) {
+            markStatsStale(touched);
+        }
+    }
+
+    int touchedCount() {
+        return touched.size();
+    }
+
+    private Long idOf(String name) {
+        if (name == null) {
+            return null;
+        }
+        Long id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        //새 팀은 이름마다 한번만 만든다. 다른 이름은 기다리지 않는다.
+        synchronized (locks.computeIfAbsent(name, k -> new Object())) {
+            id = ids.get(name);
+            if (id == null) {
+                id = transactionTemplate.execute(status -> {
+                    Team created = new Team(name);
+                    em.persist(created);
+                    return created.getId();
+                });
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    private void markStatsStale(Collection<Long> teamIds) {
+        transactionTemplate.executeWithoutResult(status -> queryFactory
+                .update(team)
+                .set(team.stats.stale, true)
+                .where(team.id.in(teamIds))
+                .execute());
+    }
+}
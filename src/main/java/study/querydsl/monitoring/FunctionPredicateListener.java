@@ -0,0 +1,84 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.config.QueryListener;
+import study.querydsl.repository.support.SqlFunctionRegistry;
+import study.querydsl.repository.support.SqlFunctionRegistry.WrappedColumn;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 조건절에서 인덱스를 탈 수 없게 함수로 감싼 컬럼을 찾아 querydsl.predicate.function 카운터로 남긴다.
+ * 모든 쿼리의 조건 트리를 훑지 않고 리포지토리 메서드마다 첫 쿼리와 그 뒤 sample-interval 번째 쿼리만 검사한다.
+ * 카운터는 검사한 쿼리마다 sample-interval 만큼 늘려서 실행 수를 추정한다.
+ * 경고 로그는 메서드/컬럼마다 한번만 남긴다.
+ */
+@Slf4j
+@Component
+public class FunctionPredicateListener implements QueryListener {
+
+    private static final int MAX_WARNED = 1000;
+
+    private final SqlFunctionRegistry functionRegistry;
+    private final ObjectProvider<MeterRegistry> registry;
+    private final int sampleInterval;
+    private final ConcurrentMap<String, AtomicLong> queries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+
+    public FunctionPredicateListener(SqlFunctionRegistry functionRegistry, ObjectProvider<MeterRegistry> registry,
+                                     @Value("${monitoring.function-predicate.sample-interval:100}") int sampleInterval) {
+        this.functionRegistry = functionRegistry;
+        this.registry = registry;
+        this.sampleInterval = Math.max(1, sampleInterval);
+    }
+
+    @Override
+    public void beforeQuery(JPAQuery<?> query) {
+        String repositoryMethod = QueryContext.repositoryMethod();
+        long seen = queries.computeIfAbsent(repositoryMethod, key -> new AtomicLong()).getAndIncrement();
+        if (seen % sampleInterval != 0) {
+            return;
+        }
+        for (WrappedColumn column : functionRegistry.findWrappedColumns(query.getMetadata().getWhere())) {
+            if (column.isIndexed()) {
+                continue;
+            }
+            Counter counter = counter(column, repositoryMethod);
+            if (counter != null) {
+                counter.increment(sampleInterval);
+            }
+            if (warned.size() < MAX_WARNED && warned.add(repositoryMethod + ":" + column)) {
+                log.warn("function-wrapped predicate {} in {} cannot use an index{}", column, repositoryMethod,
+                        column.getAlternative() != null ? ", use " + column.getAlternative() + " instead" : "");
+            }
+        }
+    }
+
+    @Override
+    public void afterQuery(QueryMetadata metadata, String operation, long elapsedNanos, Throwable error) {
+    }
+
+    private Counter counter(WrappedColumn column, String repositoryMethod) {
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry == null) {
+            return null;
+        }
+        return counters.computeIfAbsent(repositoryMethod + ":" + column, key -> Counter.builder("querydsl.predicate.function")
+                .description("함수로 감싼 컬럼 조건 실행 수 (sample-interval 로 추정)")
+                .tag("function", column.getFunction())
+                .tag("property", column.getProperty())
+                .tag("repositoryMethod", repositoryMethod)
+                .register(meterRegistry));
+    }
+}
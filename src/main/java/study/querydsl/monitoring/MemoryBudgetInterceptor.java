@@ -0,0 +1,30 @@
+package study.querydsl.monitoring;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import study.querydsl.repository.support.MemoryBudget;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 요청마다 MemoryBudget 범위를 연다. QueryContextInterceptor 뒤에 등록해야 끝날 때 endpoint 를 태그로 쓸 수 있다.
+ */
+public class MemoryBudgetInterceptor implements HandlerInterceptor {
+
+    private final MemoryBudget memoryBudget;
+
+    public MemoryBudgetInterceptor(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        memoryBudget.beginRequest();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        memoryBudget.endRequest(QueryContext.endpoint());
+    }
+}
@@ -0,0 +1,107 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 커넥션 획득 시간과 점유 시간을 엔드포인트/리포지토리 메서드 태그로 기록한다.
+ * 풀 전체의 active/idle/pending 은 hikaricp.connections.* 메트릭을 사용한다.
+ */
+public class MeteredDataSource extends DelegatingDataSource {
+
+    private final ObjectProvider<MeterRegistry> registry;
+    //태그(endpoint, repositoryMethod)별 [acquire, usage]. getConnection 마다 registry 를 찾지 않는다.
+    private final ConcurrentMap<Tags, Timer[]> timers = new ConcurrentHashMap<>();
+    private volatile MeterRegistry meterRegistry;
+
+    public MeteredDataSource(DataSource targetDataSource, ObjectProvider<MeterRegistry> registry) {
+        super(targetDataSource);
+        this.registry = registry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Tags tags = currentTags();
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        return record(connection, tags, start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Tags tags = currentTags();
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        return record(connection, tags, start);
+    }
+
+    private Connection record(Connection connection, Tags tags, long start) {
+        long acquired = System.nanoTime();
+        Timer[] pair = timers(tags);
+        if (pair == null) {
+            return connection;
+        }
+        pair[0].record(acquired - start, TimeUnit.NANOSECONDS);
+        Timer usage = pair[1];
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTargetConnection":
+                            return connection;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "close":
+                            usage.record(System.nanoTime() - acquired, TimeUnit.NANOSECONDS);
+                            break;
+                        default:
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private Timer[] timers(Tags tags) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            registry = this.registry.getIfAvailable();
+            if (registry == null) {
+                return null;
+            }
+            meterRegistry = registry;
+        }
+        MeterRegistry target = registry;
+        return timers.computeIfAbsent(tags, key -> new Timer[]{
+                Timer.builder("db.connection.acquire")
+                        .description("풀에서 커넥션을 얻기까지 기다린 시간")
+                        .tags(key)
+                        .register(target),
+                Timer.builder("db.connection.usage")
+                        .description("커넥션을 점유한 시간")
+                        .tags(key)
+                        .register(target)});
+    }
+
+    private Tags currentTags() {
+        return Tags.of("endpoint", QueryContext.endpoint(), "repositoryMethod", QueryContext.repositoryMethod());
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.repository.support.MemoryBudget;
+
+@Configuration
+public class MonitoringConfig implements WebMvcConfigurer {
+
+    private final StartupTimer startupTimer;
+    private final MemoryBudget memoryBudget;
+
+    public MonitoringConfig(StartupTimer startupTimer, MemoryBudget memoryBudget) {
+        this.startupTimer = startupTimer;
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Bean
+    public static DataSourceMetricsPostProcessor dataSourceMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        return new DataSourceMetricsPostProcessor(registry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryContextInterceptor());
+        registry.addInterceptor(new MemoryBudgetInterceptor(memoryBudget));
+        registry.addInterceptor(startupTimer);
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 여러 스레드가 넣고 한 스레드만 꺼내는 고정 크기 링 버퍼.
+ * 락 없이 CAS 로 자리를 잡고, 가득 차면 기다리지 않고 버린다.
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity 2의 제곱으로 올림한다.
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return 버퍼가 가득 차서 버렸으면 false
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long current = tail.get();
+            if (current - head.get() >= slots.length()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(current, current + 1)) {
+                //자리를 잡은 뒤 값을 쓴다. 소비자는 null 이 아닐 때까지 이 칸을 건너뛰지 않는다.
+                slots.lazySet((int) current & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 소비자 스레드 하나에서만 호출한다.
+     */
+    public E poll() {
+        long current = head.get();
+        int index = (int) current & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head.lazySet(current + 1);
+        return element;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
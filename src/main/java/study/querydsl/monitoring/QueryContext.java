@@ -0,0 +1,51 @@
+package study.querydsl.monitoring;
+
+/**
+ * 현재 스레드에서 실행중인 엔드포인트와 리포지토리 메서드.
+ * 커넥션/쿼리 메트릭의 태그로 사용한다.
+ */
+public final class QueryContext {
+
+    public static final String NONE = "none";
+
+    private static final ThreadLocal<String> ENDPOINT = new ThreadLocal<>();
+    private static final ThreadLocal<String> REPOSITORY_METHOD = new ThreadLocal<>();
+
+    private QueryContext() {
+    }
+
+    public static String endpoint() {
+        String endpoint = ENDPOINT.get();
+        return endpoint != null ? endpoint : NONE;
+    }
+
+    public static String repositoryMethod() {
+        String method = REPOSITORY_METHOD.get();
+        return method != null ? method : NONE;
+    }
+
+    static void setEndpoint(String endpoint) {
+        ENDPOINT.set(endpoint);
+    }
+
+    static void clearEndpoint() {
+        ENDPOINT.remove();
+    }
+
+    /**
+     * 리포지토리 호출이 중첩되면 가장 안쪽 메서드를 사용하고, 끝나면 이전 값을 돌려놓는다.
+     */
+    static String enterRepositoryMethod(String method) {
+        String previous = REPOSITORY_METHOD.get();
+        REPOSITORY_METHOD.set(method);
+        return previous;
+    }
+
+    static void exitRepositoryMethod(String previous) {
+        if (previous == null) {
+            REPOSITORY_METHOD.remove();
+        } else {
+            REPOSITORY_METHOD.set(previous);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.monitoring;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 요청의 매핑 패턴(/v2/members 등)을 QueryContext 에 넣는다.
+ * 패턴이 없는 요청(매핑 안 된 경로 등)은 URI 대신 UNMAPPED 로 묶어서 태그 값이 늘어나지 않게 한다.
+ */
+public class QueryContextInterceptor implements HandlerInterceptor {
+
+    public static final String UNMAPPED = "UNMAPPED";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        QueryContext.setEndpoint(pattern != null ? pattern.toString() : UNMAPPED);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryContext.clearEndpoint();
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import study.querydsl.config.QueryListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Querydsl 쿼리 실행 시간을 querydsl.query 타이머로 기록한다.
+ * 실행 SQL 에는 리포지토리 메서드를 주석 힌트로 붙인다. (hibernate.use_sql_comments 가 켜져 있을 때 보인다)
+ */
+@Component
+public class QueryTimingListener implements QueryListener {
+
+    private static final String COMMENT_HINT = "org.hibernate.comment";
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public QueryTimingListener(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeQuery(JPAQuery<?> query) {
+        query.setHint(COMMENT_HINT, QueryContext.repositoryMethod());
+    }
+
+    @Override
+    public void afterQuery(QueryMetadata metadata, String operation, long elapsedNanos, Throwable error) {
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry == null) {
+            return;
+        }
+        Timer.builder("querydsl.query")
+                .tag("operation", operation)
+                .tag("repositoryMethod", QueryContext.repositoryMethod())
+                .tag("outcome", error == null ? "success" : error.getClass().getSimpleName())
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
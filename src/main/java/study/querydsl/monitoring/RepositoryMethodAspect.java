@@ -0,0 +1,33 @@
+package study.querydsl.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * 리포지토리 메서드 이름(MemberRepositoryImpl.searchPageComplex 등)을 QueryContext 에 넣는다.
+ * Spring Data 리포지토리, @Repository 클래스, 커스텀 구현(*RepositoryImpl)만 대상으로 한다.
+ * 같은 패키지의 검색 보조 클래스, support 유틸은 프록시로 감싸지 않는다.
+ */
+@Aspect
+@Component
+public class RepositoryMethodAspect {
+
+    @Around("execution(* study.querydsl.repository..*.*(..))"
+            + " && (this(org.springframework.data.repository.Repository)"
+            + " || @within(org.springframework.stereotype.Repository)"
+            + " || within(study.querydsl.repository..*RepositoryImpl))")
+    public Object tagRepositoryMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> type = joinPoint.getTarget() != null && joinPoint.getTarget().getClass().getName().startsWith("study.")
+                ? joinPoint.getTarget().getClass()
+                : joinPoint.getSignature().getDeclaringType();
+        String previous = QueryContext.enterRepositoryMethod(
+                type.getSimpleName() + "." + joinPoint.getSignature().getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            QueryContext.exitRepositoryMethod(previous);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * p6spy 이벤트로 쿼리 실행 시간을 재서 SlowQueryLog 로 넘긴다.
+ * 조회는 ResultSet 을 다 읽고 닫을 때까지의 시간과 읽은 row 수를 함께 기록한다.
+ * p6spy-spring-boot-starter 가 JdbcEventListener 빈을 자동으로 등록한다.
+ */
+@Component
+public class SlowQueryListener extends JdbcEventListener {
+
+    private static final int MAX_OPEN_RESULT_SETS = 64;
+
+    /**
+     * 실행은 끝났지만 아직 ResultSet 을 읽고 있는 조회. 같은 스레드에서 실행/읽기/닫기가 일어난다.
+     */
+    private static final ThreadLocal<Map<StatementInformation, OpenQuery>> OPEN_QUERIES =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryListener(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public void onAfterExecuteQuery(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        open(statementInformation, timeElapsedNanos, e);
+    }
+
+    @Override
+    public void onAfterExecuteQuery(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        open(statementInformation, timeElapsedNanos, e);
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+        OpenQuery query = OPEN_QUERIES.get().get(resultSetInformation.getStatementInformation());
+        if (query != null) {
+            query.elapsedNanos += timeElapsedNanos;
+            if (hasNext) {
+                query.rows++;
+            }
+        }
+    }
+
+    @Override
+    public void onAfterResultSetClose(ResultSetInformation resultSetInformation, SQLException e) {
+        StatementInformation statementInformation = resultSetInformation.getStatementInformation();
+        OpenQuery query = OPEN_QUERIES.get().remove(statementInformation);
+        if (query != null) {
+            record(statementInformation, query.elapsedNanos, query.rows, query.repositoryMethod, query.endpoint);
+        }
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(PreparedStatementInformation statementInformation, long timeElapsedNanos, int rowCount, SQLException e) {
+        record(statementInformation, timeElapsedNanos, rowCount);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(StatementInformation statementInformation, long timeElapsedNanos, String sql, int rowCount, SQLException e) {
+        record(statementInformation, timeElapsedNanos, rowCount);
+    }
+
+    @Override
+    public void onAfterExecuteBatch(StatementInformation statementInformation, long timeElapsedNanos, int[] updateCounts, SQLException e) {
+        long rows = 0;
+        if (updateCounts != null) {
+            for (int count : updateCounts) {
+                rows += Math.max(count, 0);
+            }
+        }
+        record(statementInformation, timeElapsedNanos, rows);
+    }
+
+    @Override
+    public void onAfterExecute(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        record(statementInformation, timeElapsedNanos, -1);
+    }
+
+    @Override
+    public void onAfterExecute(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        record(statementInformation, timeElapsedNanos, -1);
+    }
+
+    private void open(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (e != null) {
+            record(statementInformation, timeElapsedNanos, -1);
+            return;
+        }
+        Map<StatementInformation, OpenQuery> openQueries = OPEN_QUERIES.get();
+        //ResultSet 을 닫지 않고 버린 경우가 쌓이지 않게 한다.
+        if (openQueries.size() >= MAX_OPEN_RESULT_SETS) {
+            openQueries.clear();
+        }
+        //리포지토리 메서드는 실행 시점의 값을 잡아 둔다. 스트리밍 조회는 메서드가 끝난 뒤에 닫힐 수 있다.
+        openQueries.put(statementInformation,
+                new OpenQuery(timeElapsedNanos, QueryContext.repositoryMethod(), QueryContext.endpoint()));
+    }
+
+    private void record(StatementInformation statementInformation, long elapsedNanos, long rows) {
+        record(statementInformation, elapsedNanos, rows, QueryContext.repositoryMethod(), QueryContext.endpoint());
+    }
+
+    private void record(StatementInformation statementInformation, long elapsedNanos, long rows,
+                        String repositoryMethod, String endpoint) {
+        //빠른 쿼리는 SQL 문자열도 꺼내지 않는다.
+        if (slowQueryLog.isSlow(elapsedNanos)) {
+            slowQueryLog.record(elapsedNanos, statementInformation.getSql(), rows, repositoryMethod, endpoint);
+        }
+    }
+
+    private static final class OpenQuery {
+        private long elapsedNanos;
+        private long rows;
+        private final String repositoryMethod;
+        private final String endpoint;
+
+        private OpenQuery(long elapsedNanos, String repositoryMethod, String endpoint) {
+            this.elapsedNanos = elapsedNanos;
+            this.repositoryMethod = repositoryMethod;
+            this.endpoint = endpoint;
+        }
+    }
+}
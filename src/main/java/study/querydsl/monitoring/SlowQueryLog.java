@@ -0,0 +1,116 @@
+package study.querydsl.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 느린 쿼리를 구조화된 한 줄 로그로 남긴다.
+ * 요청 스레드는 링 버퍼에 넣기만 하고, 로그 출력은 별도 데몬 스레드가 한다.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog implements DisposableBean {
+
+    private final long thresholdNanos;
+    private final MpscRingBuffer<Entry> buffer;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public SlowQueryLog(@Value("${monitoring.slow-query.threshold-ms:200}") long thresholdMs,
+                        @Value("${monitoring.slow-query.buffer-size:1024}") int bufferSize) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.buffer = new MpscRingBuffer<>(bufferSize);
+        this.drainer = new Thread(this::drain, "slow-query-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * 임계치 이상일 때만 버퍼에 넣는다. 버퍼가 가득 차면 버린다.
+     *
+     * @param rows 알 수 없으면 -1
+     */
+    public void record(long elapsedNanos, String sql, long rows, String repositoryMethod, String endpoint) {
+        if (!isSlow(elapsedNanos)) {
+            return;
+        }
+        buffer.offer(new Entry(elapsedNanos, sql, rows, repositoryMethod, endpoint));
+    }
+
+    public long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    private void drain() {
+        while (running) {
+            Entry entry = buffer.poll();
+            if (entry == null) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            write(entry);
+        }
+        //종료 시 남은 것은 출력하고 끝낸다.
+        Entry entry;
+        while ((entry = buffer.poll()) != null) {
+            write(entry);
+        }
+    }
+
+    private static void write(Entry entry) {
+        log.warn("slow query durationMs={} binds={} rows={} method={} endpoint={} sql={}",
+                TimeUnit.NANOSECONDS.toMillis(entry.elapsedNanos), countBinds(entry.sql), entry.rows,
+                entry.repositoryMethod, entry.endpoint, entry.sql);
+    }
+
+    /**
+     * 바인딩 파라미터 수. 문자열 리터럴 안의 ? 는 세지 않는다.
+     */
+    static int countBinds(String sql) {
+        if (sql == null) {
+            return 0;
+        }
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        drainer.join(1000);
+    }
+
+    private static final class Entry {
+        private final long elapsedNanos;
+        private final String sql;
+        private final long rows;
+        private final String repositoryMethod;
+        private final String endpoint;
+
+        private Entry(long elapsedNanos, String sql, long rows, String repositoryMethod, String endpoint) {
+            this.elapsedNanos = elapsedNanos;
+            this.sql = sql;
+            this.rows = rows;
+            this.repositoryMethod = repositoryMethod;
+            this.endpoint = endpoint;
+        }
+    }
+}
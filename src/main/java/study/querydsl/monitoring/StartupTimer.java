@@ -0,0 +1,64 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JVM 시작부터 ApplicationReadyEvent 까지, 그리고 첫 요청 응답까지 걸린 시간.
+ * application.startup.ready / application.startup.first.request 게이지(ms)로 남긴다.
+ */
+@Slf4j
+@Component
+public class StartupTimer implements HandlerInterceptor {
+
+    private final ObjectProvider<MeterRegistry> registry;
+    private final AtomicBoolean firstRequestDone = new AtomicBoolean();
+    private volatile long readyMs = -1;
+    private volatile long firstRequestMs = -1;
+
+    public StartupTimer(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMs = sinceJvmStart();
+        log.info("application ready in {}ms", readyMs);
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry != null) {
+            Gauge.builder("application.startup.ready", this, StartupTimer::getReadyMs).register(meterRegistry);
+            Gauge.builder("application.startup.first.request", this, StartupTimer::getFirstRequestMs).register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!firstRequestDone.get() && firstRequestDone.compareAndSet(false, true)) {
+            firstRequestMs = sinceJvmStart();
+            log.info("first request {} served {}ms after start", request.getRequestURI(), firstRequestMs);
+        }
+    }
+
+    public long getReadyMs() {
+        return readyMs;
+    }
+
+    public long getFirstRequestMs() {
+        return firstRequestMs;
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.RetryOnConflict;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+
+/**
+ * 회원 한명을 고치는 쓰기 메서드. 비관적 락(select ... for update) 없이 @Version 으로 충돌을 잡고,
+ * 충돌하면 새 트랜잭션에서 다시 읽어 다시 적용한다. 그래서 각 메서드는 읽은 값에 상관없이 같은 결과를 내야 한다.
+ */
+@Repository
+@RetryOnConflict
+@Transactional
+public class MemberCommandRepository {
+
+    private final EntityManager em;
+
+    public MemberCommandRepository(EntityManager em) {
+        this.em = em;
+    }
+
+    public Member changeAge(Long memberId, int age) {
+        Member member = find(memberId);
+        member.setAge(age);
+        return member;
+    }
+
+    /**
+     * 나이를 delta 만큼 바꾼다. 충돌 후 재시도하면 최신 나이에 다시 더하므로 갱신이 사라지지 않는다.
+     */
+    public Member addAge(Long memberId, int delta) {
+        Member member = find(memberId);
+        member.setAge(member.getAge() + delta);
+        return member;
+    }
+
+    public Member changeTeam(Long memberId, Long teamId) {
+        Member member = find(memberId);
+        Team team = em.find(Team.class, teamId);
+        if (team == null) {
+            throw new EntityNotFoundException("team not found: " + teamId);
+        }
+        member.changeTeam(team);
+        return member;
+    }
+
+    private Member find(Long memberId) {
+        Member member = em.find(Member.class, memberId);
+        if (member == null) {
+            throw new EntityNotFoundException("member not found: " + memberId);
+        }
+        return member;
+    }
+}
@@ -1,24 +1,34 @@
 package study.querydsl.repository;
 
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.repository.support.MemoryBudget;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
@@ -27,13 +37,21 @@ import static study.querydsl.entity.QTeam.*;
 @Repository
 public class MemberJpaRepository {
 
+    private static final int FETCH_SIZE = 500;
+    private static final long MANAGED_MEMBER_OVERHEAD_BYTES = 320;
+
     //entity manager는 스프링에서 동시성 문제를 모두 해결해준다.
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchGuard searchGuard;
+    private final MemoryBudget memoryBudget;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory, MemberSearchGuard searchGuard,
+                               MemoryBudget memoryBudget) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = queryFactory;
+        this.searchGuard = searchGuard;
+        this.memoryBudget = memoryBudget;
     }
 
     public void save(Member member) {
@@ -45,16 +63,75 @@ public class MemberJpaRepository {
         return Optional.ofNullable(findMember);
     }
 
+    /**
+     * 한 행씩 읽으면서 MemoryBudget 에 추정 크기를 더하고, 요청 한도를 넘으면 다 읽기 전에 중단한다.
+     * 큰 테이블은 findAllEach 로 스트리밍한다.
+     */
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m")
-                .getResultList();
+        try (Stream<Member> rows = em.createQuery("select m from Member m", Member.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .getResultStream()) {
+            return collect(rows.iterator());
+        }
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_QueryDsl() {
-        return queryFactory
+        CloseableIterator<Member> rows = queryFactory
                 .selectFrom(member)
-                .fetch();
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .iterate();
+        try {
+            return collect(rows);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * 회원을 리스트로 모으지 않고 한 건씩 넘겨준다. 넘겨준 회원은 detach 하므로 한번에 한 행만 메모리에 남는다.
+     * consumer 에서 회원을 고쳐도 반영되지 않는다.
+     */
+    @Transactional(readOnly = true)
+    public void findAllEach(Consumer<Member> consumer) {
+        CloseableIterator<Member> rows = queryFactory
+                .selectFrom(member)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .iterate();
+        try (MemoryBudget.Scope scope = memoryBudget.open()) {
+            while (rows.hasNext()) {
+                Member row = rows.next();
+                long bytes = estimateManagedBytes(row);
+                scope.add(bytes);
+                consumer.accept(row);
+                em.detach(row);
+                scope.release(bytes);
+            }
+        } finally {
+            rows.close();
+        }
+    }
 
+    private List<Member> collect(Iterator<Member> rows) {
+        List<Member> result = new ArrayList<>();
+        try (MemoryBudget.Scope scope = memoryBudget.open()) {
+            while (rows.hasNext()) {
+                Member row = rows.next();
+                scope.add(estimateManagedBytes(row));
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    //영속 상태 Member 한 건의 추정 크기.
+    //Member 객체와 id/version 박싱, 스냅샷(loadedState) 배열, EntityEntry, EntityKey, 영속성 컨텍스트 맵 엔트리를 합친 값에
+    //username, usernameLower 문자열을 더한다. (스냅샷은 같은 문자열을 참조하므로 한번만 센다)
+    private static long estimateManagedBytes(Member member) {
+        return MANAGED_MEMBER_OVERHEAD_BYTES
+                + MemoryBudget.stringBytes(member.getUsername())
+                + MemoryBudget.stringBytes(member.getUsernameLower());
     }
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username")
@@ -72,7 +149,7 @@ public class MemberJpaRepository {
         //동적 쿼리 시에는 왠만하면 페이징 처리를 같이하자 모든 조건이 널일때 엄청 많은 조회의 양이 나올 수 있따.
         BooleanBuilder builder = new BooleanBuilder();
         if(hasText(condition.getUsername())) {
-           builder.and(member.username.eq(condition.getUsername()));
+           builder.and(MemberPredicates.usernameMatches(condition.getUsername(), condition.getUsernameMatch()));
         }
         if(hasText(condition.getTeamName())) {
            builder.and(team.name.eq(condition.getTeamName()));
@@ -85,7 +162,7 @@ public class MemberJpaRepository {
         }
 
 
-        return queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -95,12 +172,12 @@ public class MemberJpaRepository {
                 ))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(builder)
-                .fetch();
+                .where(builder);
+        return guarded(condition, query);
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -111,17 +188,22 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                        )
-                .fetch();
+                        );
+        return guarded(condition, query);
+    }
+
+    //페이징이 없으므로 너무 많으면 거절한다.
+    private <T> List<T> guarded(MemberSearchCondition condition, JPAQuery<T> query) {
+        return searchGuard.check(condition, query.limit(searchGuard.probeLimit()).fetch());
     }
 
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private BooleanExpression usernameEq(String username, UsernameMatch usernameMatch) {
+        return MemberPredicates.usernameMatches(username, usernameMatch);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
@@ -0,0 +1,75 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.EntityPathCache;
+import study.querydsl.repository.support.IndexedPredicateValidator;
+import study.querydsl.repository.support.UnsafePredicateException;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * QuerydslPredicateExecutor 대신 사용하는 제한된 조회.
+ * 인덱스가 있는 경로에 대한 조건만 허용하고, 페이징을 강제하며, 카운트 쿼리는 필요할 때만 실행한다.
+ */
+@Component
+public class MemberPredicateExecutor {
+
+    private static final IndexedPredicateValidator VALIDATOR = new IndexedPredicateValidator(
+            Member.class,
+            new HashSet<>(Arrays.asList("", "id", "username", "usernameLower", "age", "team", "team.id")),
+            Collections.singletonMap("username", "usernameLower"));
+
+    private final JPAQueryFactory queryFactory;
+    private final Querydsl querydsl;
+    private final int maxPageSize;
+
+    public MemberPredicateExecutor(EntityManager em, JPAQueryFactory queryFactory,
+                                   @Value("${member.predicate.max-page-size:1000}") int maxPageSize) {
+        this.queryFactory = queryFactory;
+        this.querydsl = new Querydsl(em, EntityPathCache.pathBuilder(Member.class));
+        this.maxPageSize = maxPageSize;
+    }
+
+    public Page<Member> findAll(Predicate predicate, Pageable pageable) {
+        if (pageable == null || pageable.isUnpaged()) {
+            throw new UnsafePredicateException("페이징 없이 조회할 수 없습니다.");
+        }
+        if (pageable.getPageSize() > maxPageSize) {
+            throw new UnsafePredicateException("페이지 크기는 " + maxPageSize + " 이하여야 합니다.");
+        }
+        for (Sort.Order order : pageable.getSort()) {
+            if (!VALIDATOR.isIndexed(order.getProperty())) {
+                throw new UnsafePredicateException("인덱스가 없는 프로퍼티로 정렬할 수 없습니다: " + order.getProperty());
+            }
+        }
+        Predicate safePredicate = VALIDATOR.validate(predicate);
+
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .where(safePredicate);
+        List<Member> content = querydsl.applyPagination(pageable, contentQuery).fetch();
+
+        //카운트 쿼리 최적화. 첫 페이지가 다 안 찼거나 마지막 페이지면 실행하지 않는다.
+        JPAQuery<Long> countQuery = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(safePredicate);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+    }
+}
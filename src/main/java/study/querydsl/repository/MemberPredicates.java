@@ -0,0 +1,33 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 여러 리포지토리에서 같이 쓰는 username 검색 조건
+ */
+public final class MemberPredicates {
+
+    private MemberPredicates() {
+    }
+
+    public static BooleanExpression usernameMatches(String username, UsernameMatch match) {
+        if (!hasText(username)) {
+            return null;
+        }
+        switch (UsernameMatch.orDefault(match)) {
+            case PREFIX:
+                return member.username.startsWith(username);
+            case IGNORE_CASE:
+                return member.usernameLower.eq(Member.normalize(username));
+            case IGNORE_CASE_PREFIX:
+                return member.usernameLower.startsWith(Member.normalize(username));
+            default:
+                return member.username.eq(username);
+        }
+    }
+}
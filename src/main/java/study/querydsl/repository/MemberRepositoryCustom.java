@@ -2,14 +2,26 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import com.querydsl.core.types.Predicate;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberSyncDto;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UpsertResult;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    MemberTeamColumns searchColumns(MemberSearchCondition condition);
+    List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions);
+    List<MemberTeamDto> fullTextSearch(String query, int limit);
+    void searchEach(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer);
+    long moveMembers(Predicate predicate, Team target);
+    UpsertResult upsertMembers(List<MemberSyncDto> members);
 }
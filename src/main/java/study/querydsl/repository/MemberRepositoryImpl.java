@@ -1,20 +1,56 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberSyncDto;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UpsertResult;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.search.MemberSearchIndexer;
+import study.querydsl.repository.support.MemberUpsertSql;
+import study.querydsl.repository.support.SqlFunctionRegistry.Dialect;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
@@ -22,15 +58,40 @@ import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
+    private static final int COLUMNS_FETCH_SIZE = 1000;
+    private static final int BATCH_CONDITION_SIZE = 100;
+    //int 컬럼 하나에 담는 조건 수 (부호 비트 제외)
+    private static final int CONDITIONS_PER_MASK = 31;
+    //in 절 패딩(1024)을 넘지 않게 나눠서 찾는다.
+    private static final int IN_CLAUSE_SIZE = 1000;
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchGuard searchGuard;
+    private final MemberSearchIndexer searchIndexer;
+    private final MemberSqlRepository sqlRepository;
+    //DTO 조회를 querydsl-sql 로 실행한다.
+    private final boolean sqlFastPath;
 
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberRepositoryImpl(EntityManager em, JPAQueryFactory queryFactory,
+                                MemberSearchGuard searchGuard, MemberSearchIndexer searchIndexer,
+                                MemberSqlRepository sqlRepository,
+                                @Value("${member.search.sql-fast-path:false}") boolean sqlFastPath) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.searchGuard = searchGuard;
+        this.searchIndexer = searchIndexer;
+        this.sqlRepository = sqlRepository;
+        this.sqlFastPath = sqlFastPath;
     }
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
+        if (useSqlFastPath()) {
+            return sqlRepository.search(condition);
+        }
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -41,16 +102,20 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+                );
+        //페이징이 없으므로 너무 많으면 거절한다.
+        return searchGuard.check(condition, query.limit(searchGuard.probeLimit()).fetch());
     }
 
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        if (useSqlFastPath()) {
+            return sqlRepository.searchPageSimple(condition, pageable);
+        }
         QueryResults<MemberTeamDto> results = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -62,7 +127,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -78,6 +143,9 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        if (useSqlFastPath()) {
+            return sqlRepository.searchPageComplex(condition, pageable);
+        }
         List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -89,7 +157,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -104,7 +172,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -115,8 +183,426 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
     }
 
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    /**
+     * 여러 조건을 or 로 묶어서 한번에 조회하고 결과를 조건별로 나눠준다.
+     * 반환 리스트의 순서는 conditions 의 순서와 같고, 여러 조건에 걸리는 회원은 각 결과에 모두 들어간다.
+     * 어느 조건에 걸렸는지는 DB 가 판단한다. (대소문자, collation 이 자바 비교와 다를 수 있다)
+     * 조건 i 에 맞으면 i 번째 비트를 켜는 case when 합계를 CONDITIONS_PER_MASK 개씩 컬럼으로 같이 조회한다.
+     */
+    @Override
+    public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions) {
+        List<List<MemberTeamDto>> results = new ArrayList<>(conditions.size());
+        for (int i = 0; i < conditions.size(); i++) {
+            results.add(new ArrayList<>());
+        }
+
+        for (int from = 0; from < conditions.size(); from += BATCH_CONDITION_SIZE) {
+            List<MemberSearchCondition> chunk =
+                    conditions.subList(from, Math.min(from + BATCH_CONDITION_SIZE, conditions.size()));
+
+            BooleanBuilder anyCondition = new BooleanBuilder();
+            boolean matchesAll = false;
+            List<NumberExpression<Integer>> masks = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                MemberSearchCondition condition = chunk.get(i);
+                BooleanBuilder builder = new BooleanBuilder()
+                        .and(usernameEq(condition.getUsername(), condition.getUsernameMatch()))
+                        .and(teamNameEq(condition.getTeamName()))
+                        .and(ageGoe(condition.getAgeGoe()))
+                        .and(ageLoe(condition.getAgeLoe()));
+                if (!builder.hasValue()) {
+                    matchesAll = true;
+                }
+                anyCondition.or(builder);
+
+                int bit = i % CONDITIONS_PER_MASK;
+                NumberExpression<Integer> flag = builder.hasValue()
+                        ? new CaseBuilder().when(builder).then(intParam(1 << bit)).otherwise(intParam(0))
+                        : intParam(1 << bit);
+                if (bit == 0) {
+                    masks.add(flag);
+                } else {
+                    masks.set(masks.size() - 1, masks.get(masks.size() - 1).add(flag));
+                }
+            }
+
+            QMemberTeamDto dto = new QMemberTeamDto(
+                    member.id.as("memberId"),
+                    member.username,
+                    member.age,
+                    team.id.as("teamId"),
+                    team.name.as("teamName"));
+            List<Expression<?>> select = new ArrayList<>();
+            select.add(dto);
+            select.addAll(masks);
+            List<Tuple> rows = queryFactory
+                    .select(select.toArray(new Expression<?>[0]))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(matchesAll ? null : anyCondition)
+                    .fetch();
+
+            for (Tuple row : rows) {
+                MemberTeamDto memberTeam = row.get(dto);
+                for (int i = 0; i < chunk.size(); i++) {
+                    Number mask = row.get(1 + i / CONDITIONS_PER_MASK, Number.class);
+                    if (mask != null && (mask.intValue() >>> (i % CONDITIONS_PER_MASK) & 1) != 0) {
+                        results.get(from + i).add(memberTeam);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    //비트 값은 바인딩해서 조건 개수와 위치가 달라도 조건 모양이 같으면 같은 SQL 이 되게 한다.
+    //select 절의 case 결과 타입을 파라미터로 정할 수 없는 DB 가 있어 cast(? as integer) 로 감싼다.
+    //(castToNum 은 타입이 같으면 cast 를 생략하므로 NUMCAST 를 직접 만든다)
+    private static NumberExpression<Integer> intParam(int value) {
+        return Expressions.numberOperation(Integer.class, Ops.NUMCAST,
+                Expressions.constant(value), Expressions.constant(Integer.class));
+    }
+
+    /**
+     * 역색인에서 회원 id 를 찾고 in 쿼리 한번으로 채운다.
+     * 색인은 커밋된 데이터 기준이다.
+     */
+    @Override
+    public List<MemberTeamDto> fullTextSearch(String query, int limit) {
+        List<Long> ids = searchIndexer.search(query, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids))
+                .orderBy(member.id.asc())
+                .fetch();
+    }
+
+    /**
+     * 결과를 리스트로 모으지 않고 한 건씩 넘겨준다. (응답 스트리밍용)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void searchEach(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+        CloseableIterator<MemberTeamDto> iterator = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .iterate();
+        try {
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * 대량 조회용. Tuple/DTO 를 만들지 않고 ResultSet 에서 바로 컬럼 배열을 채운다.
+     * JDBC 로 직접 조회하므로 영속성 컨텍스트의 변경 내용은 먼저 flush 한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition) {
+        if (em.isJoinedToTransaction()) {
+            em.flush();
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "select m.member_id, m.username, m.age, t.team_id, t.name" +
+                " from member m left outer join team t on m.team_id = t.team_id" +
+                " where 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (hasText(condition.getUsername())) {
+            UsernameMatch usernameMatch = UsernameMatch.orDefault(condition.getUsernameMatch());
+            String column = usernameMatch.isIgnoreCase() ? "m.username_lower" : "m.username";
+            String username = usernameMatch.isIgnoreCase()
+                    ? Member.normalize(condition.getUsername())
+                    : condition.getUsername();
+            if (usernameMatch.isPrefix()) {
+                sql.append(" and ").append(column).append(" like ? escape '!'");
+                params.add(username.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+            } else {
+                sql.append(" and ").append(column).append(" = ?");
+                params.add(username);
+            }
+        }
+        if (hasText(condition.getTeamName())) {
+            sql.append(" and t.name = ?");
+            params.add(condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            sql.append(" and m.age >= ?");
+            params.add(condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            sql.append(" and m.age <= ?");
+            params.add(condition.getAgeLoe());
+        }
+
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+                ps.setFetchSize(COLUMNS_FETCH_SIZE);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                MemberTeamColumns.Builder columns = MemberTeamColumns.builder(COLUMNS_FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long memberId = rs.getLong(1);
+                        String username = rs.getString(2);
+                        int age = rs.getInt(3);
+                        long teamId = rs.getLong(4);
+                        boolean hasTeam = !rs.wasNull();
+                        columns.add(memberId, username, age, teamId, hasTeam, hasTeam ? rs.getString(5) : null);
+                    }
+                }
+                return columns.build();
+            }
+        });
+    }
+
+
+    /**
+     * predicate 에 맞는 회원을 target 팀으로 벌크 update 로 옮긴다. 회원/팀 엔티티와 컬렉션을 읽지 않는다.
+     * - 옮길 회원 id 와 원래 팀 id 만 먼저 조회하고, id in (...) 조건의 update 를 IN_CLAUSE_SIZE 씩 실행한다.
+     * - 이미 target 팀인 회원은 제외한다.
+     * - 원래 팀과 target 팀의 통계는 stale 로 표시하고 다음 통계 조회 때 다시 계산한다.
+     * - 영속성 컨텍스트에서는 옮긴 Member 만 detach 하고, 원래 팀과 target 팀은 refresh 해서 members 컬렉션을 다시 읽게 한다.
+     * - 전문 검색 색인은 커밋 후 옮긴 회원만 다시 반영한다.
+     *
+     * @return 옮긴 회원 수
+     */
+    @Override
+    @Transactional
+    public long moveMembers(Predicate predicate, Team target) {
+        Assert.notNull(target, "target team must not be null");
+        Assert.notNull(target.getId(), "target team must be persisted");
+        //벌크 update 는 영속성 컨텍스트를 거치지 않으므로 쌓인 변경을 먼저 반영한다.
+        em.flush();
+
+        List<Long> memberIds = new ArrayList<>();
+        Set<Long> teamIds = new HashSet<>();
+        teamIds.add(target.getId());
+        List<Tuple> rows = queryFactory
+                .select(member.id, member.team.id)
+                .from(member)
+                .where(predicate, member.team.isNull().or(member.team.id.ne(target.getId())))
+                .fetch();
+        for (Tuple row : rows) {
+            memberIds.add(row.get(member.id));
+            if (row.get(member.team.id) != null) {
+                teamIds.add(row.get(member.team.id));
+            }
+        }
+        if (memberIds.isEmpty()) {
+            return 0;
+        }
+
+        markStatsStale(teamIds);
+
+        long moved = 0;
+        for (int from = 0; from < memberIds.size(); from += IN_CLAUSE_SIZE) {
+            moved += queryFactory
+                    .update(member)
+                    .set(member.team, target)
+                    .set(member.version, member.version.add(1))
+                    .where(member.id.in(memberIds.subList(from, Math.min(from + IN_CLAUSE_SIZE, memberIds.size()))),
+                            member.team.isNull().or(member.team.id.ne(target.getId())))
+                    .execute();
+        }
+
+        evictChanged(new HashSet<>(memberIds), teamIds);
+        searchIndexer.reindexMembersAfterCommit(memberIds);
+        return moved;
+    }
+
+    /**
+     * 벌크 update 로 DB 와 달라진 엔티티만 정리한다.
+     * 바뀐 Member 는 team, version 등이 달라졌으므로 detach 한다. (다시 조회해서 써야 한다)
+     * 관련 Team 은 flush 직후라 미반영 변경이 없으므로 refresh 한다. members 컬렉션은 다음에 읽을 때 DB 에서 가져온다.
+     */
+    private void evictChanged(Set<Long> memberIds, Set<Long> teamIds) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        List<Object> changed = new ArrayList<>();
+        List<Object> teams = new ArrayList<>();
+        for (Object entity : session.getPersistenceContext().getEntitiesByKey().values()) {
+            if (entity instanceof Member && memberIds.contains(((Member) entity).getId())) {
+                changed.add(entity);
+            } else if (entity instanceof Team && teamIds.contains(((Team) entity).getId())) {
+                teams.add(entity);
+            }
+        }
+        for (Object entity : changed) {
+            em.detach(entity);
+        }
+        for (Object entity : teams) {
+            em.refresh(entity);
+        }
+    }
+
+    /**
+     * username 을 키로 회원을 한번에 넣거나 고친다. 행마다 조회/저장하지 않고 배치 단위로 SQL 을 보낸다.
+     * - username 유니크 인덱스를 키로 MERGE / ON CONFLICT (username) / ON DUPLICATE KEY 를 JDBC 배치로 실행한다.
+     * - 새 회원 id 는 Hibernate id 생성기(member_seq)에서 받는다. 기존 회원이면 받은 id 는 쓰이지 않는다.
+     * - 입력에 같은 username 이 여러번 있으면 마지막 값을 쓴다.
+     * - 기존 회원은 먼저 select ... for update 로 잠그고 원래 팀을 찾는다. 원래 팀과 새 팀의 통계는 stale 로 표시한다.
+     * - inserted/updated 는 upsert 가 쓴 row 의 member_id 가 넘긴 새 id 인지로 센다.
+     *   쓴 row 는 커밋까지 이 트랜잭션이 잠그고 있으므로 다른 트랜잭션이 끼어들 수 없다.
+     * - 영속성 컨텍스트에서는 고친 Member 만 detach 하고 관련 Team 은 refresh 한다.
+     * - 전문 검색 색인은 커밋 후 넣거나 고친 회원만 다시 반영한다.
+     */
+    @Override
+    @Transactional
+    public UpsertResult upsertMembers(List<MemberSyncDto> members) {
+        Map<String, MemberSyncDto> byUsername = new LinkedHashMap<>();
+        for (MemberSyncDto dto : members) {
+            Assert.hasText(dto.getUsername(), "username must not be empty");
+            byUsername.put(dto.getUsername(), dto);
+        }
+        if (byUsername.isEmpty()) {
+            return new UpsertResult(0, 0);
+        }
+        //JDBC 로 직접 쓰므로 쌓인 변경을 먼저 반영한다.
+        em.flush();
+
+        List<String> usernames = new ArrayList<>(byUsername.keySet());
+        Set<Long> lockedIds = new HashSet<>();
+        Set<Long> staleTeamIds = new HashSet<>();
+        for (int from = 0; from < usernames.size(); from += IN_CLAUSE_SIZE) {
+            List<Tuple> rows = queryFactory
+                    .select(member.id, member.team.id)
+                    .from(member)
+                    .where(member.username.in(usernames.subList(from, Math.min(from + IN_CLAUSE_SIZE, usernames.size()))))
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .fetch();
+            for (Tuple row : rows) {
+                lockedIds.add(row.get(member.id));
+                if (row.get(member.team.id) != null) {
+                    staleTeamIds.add(row.get(member.team.id));
+                }
+            }
+        }
+        for (MemberSyncDto dto : byUsername.values()) {
+            if (dto.getTeamId() != null) {
+                staleTeamIds.add(dto.getTeamId());
+            }
+        }
+        markStatsStale(staleTeamIds);
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        IdentifierGenerator idGenerator = session.getFactory().getMetamodel()
+                .entityPersister(Member.class).getIdentifierGenerator();
+        Map<String, Long> newIds = new HashMap<>();
+        session.doWork(connection -> {
+            String sql = MemberUpsertSql.forDialect(Dialect.of(connection.getMetaData().getDatabaseProductName()));
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                int pending = 0;
+                for (MemberSyncDto dto : byUsername.values()) {
+                    Long newId = (Long) idGenerator.generate(session, null);
+                    newIds.put(dto.getUsername(), newId);
+                    ps.setLong(1, newId);
+                    ps.setString(2, dto.getUsername());
+                    ps.setString(3, Member.normalize(dto.getUsername()));
+                    ps.setInt(4, dto.getAge());
+                    if (dto.getTeamId() != null) {
+                        ps.setLong(5, dto.getTeamId());
+                    } else {
+                        ps.setNull(5, Types.BIGINT);
+                    }
+                    ps.addBatch();
+                    if (++pending == UPSERT_BATCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+            }
+        });
+
+        List<Long> memberIds = new ArrayList<>();
+        Set<Long> updatedIds = new HashSet<>();
+        long inserted = 0;
+        for (int from = 0; from < usernames.size(); from += IN_CLAUSE_SIZE) {
+            List<Tuple> rows = queryFactory
+                    .select(member.id, member.username)
+                    .from(member)
+                    .where(member.username.in(usernames.subList(from, Math.min(from + IN_CLAUSE_SIZE, usernames.size()))))
+                    .fetch();
+            for (Tuple row : rows) {
+                Long id = row.get(member.id);
+                memberIds.add(id);
+                if (id.equals(newIds.get(row.get(member.username)))) {
+                    inserted++;
+                } else {
+                    updatedIds.add(id);
+                }
+            }
+        }
+        if (!lockedIds.containsAll(updatedIds)) {
+            //잠근 뒤 다른 트랜잭션이 넣은 회원을 고쳤다. 원래 팀을 알 수 없으므로 모든 팀 통계를 다시 계산하게 한다.
+            queryFactory
+                    .update(team)
+                    .set(team.stats.stale, true)
+                    .execute();
+        }
+
+        evictChanged(updatedIds, staleTeamIds);
+        searchIndexer.reindexMembersAfterCommit(memberIds);
+        return new UpsertResult(inserted, updatedIds.size());
+    }
+
+    private void markStatsStale(Set<Long> teamIds) {
+        List<Long> ids = new ArrayList<>(teamIds);
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_SIZE) {
+            queryFactory
+                    .update(team)
+                    .set(team.stats.stale, true)
+                    .where(team.id.in(ids.subList(from, Math.min(from + IN_CLAUSE_SIZE, ids.size()))))
+                    .execute();
+        }
+    }
+
+    /**
+     * SQL 경로는 영속성 컨텍스트를 거치지 않으므로, 트랜잭션 안이면 JPQL 의 auto flush 처럼 먼저 flush 한다.
+     */
+    private boolean useSqlFastPath() {
+        if (!sqlFastPath) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            em.flush();
+        }
+        return true;
+    }
+
+    private BooleanExpression usernameEq(String username, UsernameMatch usernameMatch) {
+        return MemberPredicates.usernameMatches(username, usernameMatch);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
@@ -0,0 +1,88 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.repository.support.SingleFlight;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MemberRepository 앞단에서 동시에 들어온 같은 검색(condition + pageable)을 한번만 실행한다.
+ * 저장소 타입으로 주입받는 곳과 섞이지 않도록 MemberRepositoryCustom 을 구현하지 않고 검색 메서드만 둔다.
+ * 결과는 호출한 쪽 모두가 공유하므로 읽기 전용으로 사용해야 하고, 트랜잭션 밖(컨트롤러)에서 사용한다.
+ * 스트리밍/대량 조회나 쓰기는 MemberRepository 를 직접 사용한다.
+ * 조건은 변경 가능한 @Data 객체라서 복사본을 실행에 쓰고 그 값으로 불변 키를 만든다.
+ */
+@Component
+public class MemberSearchCoalescer {
+
+    private final MemberRepository memberRepository;
+    private final SingleFlight<List<Object>, Object> singleFlight;
+
+    public MemberSearchCoalescer(MemberRepository memberRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${member.search.coalesce.timeout-ms:2000}") long timeoutMillis) {
+        this.memberRepository = memberRepository;
+        this.singleFlight = new SingleFlight<>(timeoutMillis);
+
+        FunctionCounter.builder("member.search.coalesce", singleFlight, SingleFlight::getExecutedCount)
+                .tag("result", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("member.search.coalesce", singleFlight, SingleFlight::getCollapsedCount)
+                .tag("result", "collapsed")
+                .register(meterRegistry);
+        FunctionCounter.builder("member.search.coalesce", singleFlight, SingleFlight::getTimedOutCount)
+                .tag("result", "timeout")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        MemberSearchCondition snapshot = copy(condition);
+        return (List<MemberTeamDto>) singleFlight.execute(
+                key("search", snapshot, null),
+                () -> memberRepository.search(snapshot));
+    }
+
+    /**
+     * MemberRepositoryCustom.searchPageComplex 를 합쳐서 실행한다.
+     */
+    @SuppressWarnings("unchecked")
+    public Page<MemberTeamDto> search(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition snapshot = copy(condition);
+        return (Page<MemberTeamDto>) singleFlight.execute(
+                key("searchPageComplex", snapshot, pageable),
+                () -> memberRepository.searchPageComplex(snapshot, pageable));
+    }
+
+    private static MemberSearchCondition copy(MemberSearchCondition condition) {
+        MemberSearchCondition copy = new MemberSearchCondition();
+        copy.setUsername(condition.getUsername());
+        copy.setUsernameMatch(condition.getUsernameMatch());
+        copy.setTeamName(condition.getTeamName());
+        copy.setAgeGoe(condition.getAgeGoe());
+        copy.setAgeLoe(condition.getAgeLoe());
+        return copy;
+    }
+
+    //String, enum, Integer, Pageable(PageRequest) 는 모두 불변이다.
+    private static List<Object> key(String method, MemberSearchCondition condition, Pageable pageable) {
+        return Collections.unmodifiableList(Arrays.asList(
+                method,
+                condition.getUsername(),
+                UsernameMatch.orDefault(condition.getUsernameMatch()),
+                condition.getTeamName(),
+                condition.getAgeGoe(),
+                condition.getAgeLoe(),
+                pageable));
+    }
+}
@@ -0,0 +1,42 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.List;
+
+/**
+ * 페이징 없는 검색이 maxRows 건을 넘으면 SearchTooLargeException 으로 거절한다.
+ * 결과를 임의로 잘라서 돌려주지 않는다. (order by 가 없으면 어느 행이 빠질지 정해지지 않는다)
+ * count 로 전체를 세지 않고 검색 쿼리에 limit(maxRows + 1) 을 걸어서 한 건 더 나오는지만 본다.
+ */
+@Slf4j
+@Component
+public class MemberSearchGuard {
+
+    private final long maxRows;
+
+    public MemberSearchGuard(@Value("${member.search.guard.max-rows:10000}") long maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * 검색 쿼리에 걸 limit. 넘쳤는지 알 수 있도록 maxRows 보다 한 건 크다.
+     */
+    public long probeLimit() {
+        return maxRows + 1;
+    }
+
+    /**
+     * probeLimit 으로 조회한 결과를 검사한다. maxRows 를 넘으면 거절한다.
+     */
+    public <T> List<T> check(MemberSearchCondition condition, List<T> rows) {
+        if (rows.size() > maxRows) {
+            log.warn("search rejected, more than {} rows condition={}", maxRows, condition);
+            throw new SearchTooLargeException(maxRows);
+        }
+        return rows;
+    }
+}
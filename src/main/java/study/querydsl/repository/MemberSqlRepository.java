@@ -0,0 +1,123 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * MemberRepositoryImpl 의 DTO 조회를 querydsl-sql 로 실행한다.
+ * HQL 변환과 영속성 컨텍스트를 거치지 않고 ResultSet 을 바로 MemberTeamDto 로 만든다.
+ * 아직 flush 되지 않은 변경은 보이지 않는다. 필요하면 호출 전에 flush 한다.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class MemberSqlRepository {
+
+    private final SQLQueryFactory queryFactory;
+    private final MemberSearchGuard searchGuard;
+
+    public MemberSqlRepository(SQLQueryFactory queryFactory, MemberSearchGuard searchGuard) {
+        this.queryFactory = queryFactory;
+        this.searchGuard = searchGuard;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        SQLQuery<MemberTeamDto> query = selectMemberTeam(condition);
+        return searchGuard.check(condition, query.limit(searchGuard.probeLimit()).fetch());
+    }
+
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        QueryResults<MemberTeamDto> results = selectMemberTeam(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetchResults();
+        return new PageImpl<>(results.getResults(), pageable, results.getTotal());
+    }
+
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = selectMemberTeam(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        SQLQuery<Long> countQuery = queryFactory
+                .select(member.memberId)
+                .from(member)
+                .leftJoin(member.teamFk, team)
+                .where(where(condition));
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+    }
+
+    private SQLQuery<MemberTeamDto> selectMemberTeam(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.memberId,
+                        member.username,
+                        member.age,
+                        team.teamId,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.teamFk, team)
+                .where(where(condition));
+    }
+
+    private Predicate[] where(MemberSearchCondition condition) {
+        return new Predicate[]{
+                usernameEq(condition.getUsername(), condition.getUsernameMatch()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
+    }
+
+    /**
+     * MemberPredicates.usernameMatches 와 같은 조건을 SQL 경로로 만든다.
+     */
+    private BooleanExpression usernameEq(String username, UsernameMatch usernameMatch) {
+        if (!hasText(username)) {
+            return null;
+        }
+        switch (UsernameMatch.orDefault(usernameMatch)) {
+            case PREFIX:
+                return member.username.startsWith(username);
+            case IGNORE_CASE:
+                return member.usernameLower.eq(Member.normalize(username));
+            case IGNORE_CASE_PREFIX:
+                return member.usernameLower.startsWith(Member.normalize(username));
+            default:
+                return member.username.eq(username);
+        }
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
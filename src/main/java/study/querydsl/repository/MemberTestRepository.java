@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
@@ -7,6 +8,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
@@ -38,7 +40,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         JPAQuery<Member> query = selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -54,7 +56,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                 query.selectFrom(member)
                         .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -66,7 +68,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                 contentQuery.selectFrom(member)
                         .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -74,7 +76,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                 .select(member.id)
                 .from(member).leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -82,11 +84,33 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         );
     }
 
+    /**
+     * 나이가 가장 많은 회원
+     */
+    public List<Member> findOldest() {
+        return fetchWhereMax(member, new QMember("memberSub"), m -> m.age);
+    }
+
+    /**
+     * 소속 팀의 평균 나이 이상인 회원
+     */
+    public List<Member> findAgeGoeTeamAverage() {
+        return fetchGoeGroupAverage(member, new QMember("memberSub"), m -> m.team, m -> m.age);
+    }
 
+    /**
+     * 회원 이름과 전체 평균 나이
+     */
+    public List<Tuple> findUsernameWithAverageAge() {
+        QMember memberSub = new QMember("memberSub");
+        return getQueryFactory().select(member.username, average(memberSub, memberSub.age))
+                .from(member)
+                .fetch();
+    }
 
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private BooleanExpression usernameEq(String username, UsernameMatch usernameMatch) {
+        return MemberPredicates.usernameMatches(username, usernameMatch);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
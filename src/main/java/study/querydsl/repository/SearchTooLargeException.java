@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class SearchTooLargeException extends RuntimeException {
+
+    private final long maxRows;
+
+    public SearchTooLargeException(long maxRows) {
+        super("검색 결과가 너무 많습니다. (최대 " + maxRows + "건)"
+                + " 조건을 추가하거나 페이징(/v2, /v3) 또는 스트리밍(/v1/members/stream)을 사용하세요.");
+        this.maxRows = maxRows;
+    }
+
+    public long getMaxRows() {
+        return maxRows;
+    }
+}
@@ -0,0 +1,12 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamStatsDto;
+
+import java.util.List;
+
+public interface TeamRepositoryCustom {
+    List<TeamStatsDto> findTeamStats();
+    long countMembers(Long teamId);
+    List<MemberTeamDto> findMembersAfter(Long teamId, Long afterMemberId, int size);
+}
@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.support.TeamStatsUpdater;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    private static final int REFRESH_CHUNK_SIZE = 500;
+    //읽기와 쓰기를 한 문장으로 해서 계산한 값과 stale 해제 사이에 다른 변경이 끼지 않게 한다.
+    //(JPQL 벌크 update 는 대상 테이블 별칭을 빼서 상관 서브쿼리의 team_id 가 member 쪽으로 묶이므로 native 로 쓴다)
+    private static final String REFRESH_STATS = "update team t set"
+            + " stats_stale = false,"
+            + " member_count = (select count(*) from member m where m.team_id = t.team_id),"
+            + " age_sum = (select coalesce(sum(m.age), 0) from member m where m.team_id = t.team_id),"
+            + " age_min = (select min(m.age) from member m where m.team_id = t.team_id),"
+            + " age_max = (select max(m.age) from member m where m.team_id = t.team_id)"
+            + " where t.stats_stale = true and t.team_id in (:teamIds)";
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamStatsUpdater teamStatsUpdater;
+
+    public TeamRepositoryImpl(EntityManager em, JPAQueryFactory queryFactory, TeamStatsUpdater teamStatsUpdater) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.teamStatsUpdater = teamStatsUpdater;
+    }
+
+    /**
+     * 팀에 미리 집계된 통계를 조회한다. member 를 group by 하지 않으므로 팀 수에 비례한다.
+     * 삭제 등으로 min/max 를 알 수 없게 된 팀만 다시 계산한다.
+     */
+    @Override
+    @Transactional
+    public List<TeamStatsDto> findTeamStats() {
+        //회원 변경의 통계 증분은 flush 때 모았다가 커밋 직전에 반영된다. 같은 트랜잭션에서 읽으면 여기서 먼저 반영한다.
+        em.flush();
+        teamStatsUpdater.applyPending(em);
+        refreshStaleStats();
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        team.id,
+                        team.name,
+                        team.stats.memberCount,
+                        team.stats.ageSum,
+                        team.stats.ageMin,
+                        team.stats.ageMax
+                ))
+                .from(team)
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+
+    /**
+     * team.getMembers().size() 대신 사용한다. 회원을 읽지 않고 team_id 인덱스로 센다.
+     */
+    @Override
+    public long countMembers(Long teamId) {
+        return queryFactory
+                .select(member.id)
+                .from(member)
+                .where(member.team.id.eq(teamId))
+                .fetchCount();
+    }
+
+    /**
+     * 팀 회원을 id 순으로 size 개씩 읽는다. 다음 페이지는 마지막 memberId 를 afterMemberId 로 넘긴다.
+     * offset 을 쓰지 않으므로 뒤쪽 페이지도 앞쪽과 같은 비용이 든다. (team_id, member_id 인덱스 범위 조회)
+     *
+     * @param afterMemberId 첫 페이지는 null
+     */
+    @Override
+    public List<MemberTeamDto> findMembersAfter(Long teamId, Long afterMemberId, int size) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .join(member.team, team)
+                .where(
+                        team.id.eq(teamId),
+                        afterMemberId != null ? member.id.gt(afterMemberId) : null
+                )
+                .orderBy(member.id.asc())
+                .limit(size)
+                .fetch();
+    }
+
+    private void refreshStaleStats() {
+        List<Long> staleTeamIds = queryFactory
+                .select(team.id)
+                .from(team)
+                .where(team.stats.stale.isTrue())
+                .fetch();
+        //가져오기 뒤에는 stale 팀이 많을 수 있으므로 in 절을 나눈다.
+        for (int from = 0; from < staleTeamIds.size(); from += REFRESH_CHUNK_SIZE) {
+            em.createNativeQuery(REFRESH_STATS)
+                    .setParameter("teamIds", staleTeamIds.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, staleTeamIds.size())))
+                    .executeUpdate();
+        }
+    }
+}
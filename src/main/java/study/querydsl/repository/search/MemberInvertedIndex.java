@@ -0,0 +1,182 @@
+package study.querydsl.repository.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Member.username, Team.name 토큰 -> id 역색인 (posting list)
+ * 토큰은 소문자로 바꾼 영숫자 묶음과 그 안의 문자/숫자 구간이다. ("Member12" -> member12, member, 12)
+ * 검색어의 모든 토큰이 회원 이름이나 소속 팀 이름의 어떤 토큰의 앞부분과 일치하면 결과에 포함된다.
+ */
+public class MemberInvertedIndex {
+
+    private final NavigableMap<String, Set<Long>> memberPostings = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Set<Long>> teamPostings = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Long, MemberDoc> members = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<String>> teamTokens = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Long>> teamMembers = new ConcurrentHashMap<>();
+
+    public synchronized void indexMember(Long memberId, String username, Long teamId) {
+        removeMember(memberId);
+        Set<String> tokens = tokenize(username);
+        members.put(memberId, new MemberDoc(tokens, teamId));
+        for (String token : tokens) {
+            memberPostings.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(memberId);
+        }
+        if (teamId != null) {
+            teamMembers.computeIfAbsent(teamId, key -> ConcurrentHashMap.newKeySet()).add(memberId);
+        }
+    }
+
+    public synchronized void removeMember(Long memberId) {
+        MemberDoc doc = members.remove(memberId);
+        if (doc == null) {
+            return;
+        }
+        for (String token : doc.tokens) {
+            removePosting(memberPostings, token, memberId);
+        }
+        if (doc.teamId != null) {
+            removePosting(teamMembers, doc.teamId, memberId);
+        }
+    }
+
+    public synchronized void indexTeam(Long teamId, String name) {
+        removeTeamTokens(teamId);
+        Set<String> tokens = tokenize(name);
+        teamTokens.put(teamId, tokens);
+        for (String token : tokens) {
+            teamPostings.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(teamId);
+        }
+    }
+
+    public synchronized void removeTeam(Long teamId) {
+        removeTeamTokens(teamId);
+    }
+
+    /**
+     * 일치하는 회원 id (오름차순, 최대 limit 건)
+     */
+    public List<Long> search(String query, int limit) {
+        Set<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> result = null;
+        for (String token : queryTokens) {
+            Set<Long> matched = matchToken(token);
+            if (result == null) {
+                result = matched;
+            } else {
+                result.retainAll(matched);
+            }
+            if (result.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        List<Long> ids = new ArrayList<>(Math.min(result.size(), limit));
+        for (Long id : result) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    private Set<Long> matchToken(String token) {
+        Set<Long> matched = new TreeSet<>();
+        for (Set<Long> ids : prefixRange(memberPostings, token).values()) {
+            matched.addAll(ids);
+        }
+        for (Set<Long> teamIds : prefixRange(teamPostings, token).values()) {
+            for (Long teamId : teamIds) {
+                Set<Long> memberIds = teamMembers.get(teamId);
+                if (memberIds != null) {
+                    matched.addAll(memberIds);
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static NavigableMap<String, Set<Long>> prefixRange(NavigableMap<String, Set<Long>> postings, String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private void removeTeamTokens(Long teamId) {
+        Set<String> tokens = teamTokens.remove(teamId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            removePosting(teamPostings, token, teamId);
+        }
+    }
+
+    private static <K> void removePosting(Map<K, Set<Long>> postings, K key, Long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean alnum = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (alnum && start < 0) {
+                start = i;
+            } else if (!alnum && start >= 0) {
+                addWord(tokens, lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addWord(Set<String> tokens, String word) {
+        tokens.add(word);
+        int start = 0;
+        for (int i = 1; i <= word.length(); i++) {
+            if (i == word.length() || Character.isDigit(word.charAt(i)) != Character.isDigit(word.charAt(i - 1))) {
+                if (start > 0 || i < word.length()) {
+                    tokens.add(word.substring(start, i));
+                }
+                start = i;
+            }
+        }
+    }
+
+    private static class MemberDoc {
+        private final Set<String> tokens;
+        private final Long teamId;
+
+        private MemberDoc(Set<String> tokens, Long teamId) {
+            this.tokens = tokens;
+            this.teamId = teamId;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package study.querydsl.repository.search;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberInvertedIndex 를 엔티티와 맞춰둔다.
+ * - 커밋된 Member/Team insert, update, delete 를 Hibernate post-commit 이벤트로 반영한다.
+ * - 시작할 때는 rebuild() 로 id 를 keyset 으로 batchSize 개씩 끊어 구간마다 병렬로 다시 만든다.
+ * - 벌크 연산 뒤에는 바뀐 회원 id 만 다시 읽어 반영한다.
+ * - 백그라운드 작업은 전용 스레드 하나에서 차례로 실행하고, 밀린 전체 rebuild 는 한번으로 합친다.
+ * - 읽는 중에 이벤트로 반영된 id 는 기록해두고, 그보다 먼저 읽은 값으로 덮어쓰지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberSearchIndexer implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final int batchSize;
+    private final int threads;
+    //common pool 을 막지 않도록 색인 작업은 이 스레드에서만 한다.
+    private final ExecutorService tasks = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "member-search-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private volatile MemberInvertedIndex index = new MemberInvertedIndex();
+    //DB 에서 읽어 쓰는 중인 작업들. 그 사이 들어온 이벤트는 여기에도 기록한다.
+    private final List<TrackedWriter> writers = new CopyOnWriteArrayList<>();
+
+    public MemberSearchIndexer(EntityManagerFactory emf,
+                               JPAQueryFactory queryFactory,
+                               @Value("${member.search.index.batch-size:1000}") int batchSize,
+                               @Value("${member.search.index.threads:4}") int threads) {
+        this.emf = emf;
+        this.queryFactory = queryFactory;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tasks.shutdownNow();
+    }
+
+    /**
+     * 준비 완료를 막지 않도록 백그라운드에서 만든다. 실패해도 기동은 계속되고 이벤트로 들어온 회원만 검색된다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        requestRebuild();
+    }
+
+    public List<Long> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /**
+     * 벌크 연산은 Hibernate 이벤트가 없으므로 커밋 후 백그라운드에서 색인을 다시 만든다.
+     * 이미 기다리는 rebuild 가 있으면 그것으로 합친다. 트랜잭션 밖이면 바로 요청한다.
+     */
+    public void rebuildAfterCommit() {
+        afterCommit(this::requestRebuild);
+    }
+
+    /**
+     * 벌크 연산으로 바뀐 회원만 커밋 후 백그라운드에서 다시 읽어 반영한다. 지워졌으면 색인에서 뺀다.
+     */
+    public void reindexMembersAfterCommit(Collection<Long> memberIds) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        afterCommit(() -> submit(() -> reindexMembers(ids), "member search reindex after bulk update failed"));
+    }
+
+    private void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    private void requestRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            submit(() -> {
+                //이후 요청은 다음 rebuild 로 모은다.
+                rebuildPending.set(false);
+                rebuild();
+            }, "member search index rebuild failed");
+        }
+    }
+
+    private void submit(Runnable task, String failure) {
+        tasks.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn(failure, e);
+            }
+        });
+    }
+
+    /**
+     * id 를 batchSize 씩 in 절로 읽어 현재 색인에 반영한다.
+     * rebuild 와 같은 스레드에서 차례로 실행되므로 rebuild 중인 색인은 신경 쓰지 않는다.
+     */
+    private void reindexMembers(List<Long> memberIds) {
+        for (int from = 0; from < memberIds.size(); from += batchSize) {
+            List<Long> chunk = memberIds.subList(from, Math.min(from + batchSize, memberIds.size()));
+            TrackedWriter writer = new TrackedWriter(index);
+            writers.add(writer);
+            try {
+                Set<Long> missing = new HashSet<>(chunk);
+                List<Tuple> rows = queryFactory
+                        .select(member.id, member.username, member.team.id)
+                        .from(member)
+                        .where(member.id.in(chunk))
+                        .fetch();
+                for (Tuple row : rows) {
+                    missing.remove(row.get(member.id));
+                    writer.indexMember(row.get(member.id), row.get(member.username), row.get(member.team.id));
+                }
+                for (Long id : missing) {
+                    writer.removeMember(id);
+                }
+            } finally {
+                writers.remove(writer);
+            }
+        }
+    }
+
+    /**
+     * Member id 를 keyset (id > lastId order by id limit batchSize) 으로 읽어 batchSize 개씩 구간을 만들고,
+     * 구간마다 여러 스레드가 읽어 새 색인을 만들고 교체한다.
+     * min~max 를 일정 간격으로 나누지 않으므로 id 가 듬성듬성해도 (시퀀스 할당 단위, 삭제) 빈 구간을 조회하지 않는다.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        MemberInvertedIndex newIndex = new MemberInvertedIndex();
+        TrackedWriter rebuild = new TrackedWriter(newIndex);
+        writers.add(rebuild);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+                rebuild.indexTeam(row.get(team.id), row.get(team.name));
+            }
+
+            List<Future<?>> batches = new ArrayList<>();
+            Long lastId = null;
+            List<Long> ids;
+            do {
+                ids = queryFactory
+                        .select(member.id)
+                        .from(member)
+                        .where(lastId != null ? member.id.gt(lastId) : null)
+                        .orderBy(member.id.asc())
+                        .limit(batchSize)
+                        .fetch();
+                if (!ids.isEmpty()) {
+                    long fromId = ids.get(0);
+                    long toId = ids.get(ids.size() - 1);
+                    batches.add(executor.submit(() -> indexBatch(rebuild, fromId, toId)));
+                    lastId = toId;
+                }
+            } while (ids.size() == batchSize);
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+            index = newIndex;
+            log.info("member search index rebuilt. members={} elapsed={}ms",
+                    newIndex.size(), System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member search index rebuild interrupted", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("member search index rebuild failed", e);
+        } finally {
+            writers.remove(rebuild);
+            executor.shutdown();
+        }
+    }
+
+    private void indexBatch(TrackedWriter target, long fromId, long toId) {
+        List<Tuple> rows = queryFactory
+                .select(member.id, member.username, member.team.id)
+                .from(member)
+                .where(member.id.between(fromId, toId))
+                .fetch();
+        for (Tuple row : rows) {
+            target.indexMember(row.get(member.id), row.get(member.username), row.get(member.team.id));
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getEntity(), false);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        apply(event.getEntity(), false);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        apply(event.getEntity(), true);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return Member.class.equals(type) || Team.class.equals(type);
+    }
+
+    private void apply(Object entity, boolean deleted) {
+        apply(index, entity, deleted);
+        for (TrackedWriter writer : writers) {
+            writer.apply(entity, deleted);
+        }
+    }
+
+    private static void apply(MemberInvertedIndex target, Object entity, boolean deleted) {
+        if (entity instanceof Member) {
+            Member m = (Member) entity;
+            if (deleted) {
+                target.removeMember(m.getId());
+            } else {
+                target.indexMember(m.getId(), m.getUsername(), m.getTeam() != null ? m.getTeam().getId() : null);
+            }
+        } else if (entity instanceof Team) {
+            Team t = (Team) entity;
+            if (deleted) {
+                target.removeTeam(t.getId());
+            } else {
+                target.indexTeam(t.getId(), t.getName());
+            }
+        }
+    }
+
+    /**
+     * DB 에서 읽은 값을 쓰는 대상 색인. 이벤트로 반영한 id 는 먼저 읽은 (더 오래된) 값으로 쓰지 못하게 한다.
+     * 확인과 쓰기는 index 모니터 안에서 한다. (MemberInvertedIndex 메서드도 같은 모니터를 쓴다)
+     * 현재 색인이 대상이면 이벤트 값을 한번 더 쓰게 되지만 같은 값이므로 상관없다.
+     */
+    private static final class TrackedWriter {
+        private final MemberInvertedIndex index;
+        private final Set<Long> eventMembers = new HashSet<>();
+        private final Set<Long> eventTeams = new HashSet<>();
+
+        TrackedWriter(MemberInvertedIndex index) {
+            this.index = index;
+        }
+
+        void apply(Object entity, boolean deleted) {
+            synchronized (index) {
+                if (entity instanceof Member) {
+                    eventMembers.add(((Member) entity).getId());
+                } else if (entity instanceof Team) {
+                    eventTeams.add(((Team) entity).getId());
+                }
+                MemberSearchIndexer.apply(index, entity, deleted);
+            }
+        }
+
+        void indexMember(Long memberId, String username, Long teamId) {
+            synchronized (index) {
+                if (!eventMembers.contains(memberId)) {
+                    index.indexMember(memberId, username, teamId);
+                }
+            }
+        }
+
+        void removeMember(Long memberId) {
+            synchronized (index) {
+                if (!eventMembers.contains(memberId)) {
+                    index.removeMember(memberId);
+                }
+            }
+        }
+
+        void indexTeam(Long teamId, String name) {
+            synchronized (index) {
+                if (!eventTeams.contains(teamId)) {
+                    index.indexTeam(teamId, name);
+                }
+            }
+        }
+    }
+}
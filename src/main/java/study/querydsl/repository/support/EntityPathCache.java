@@ -0,0 +1,29 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 엔티티 클래스별 PathBuilder 캐시.
+ * Q클래스를 리플렉션으로 찾는 비용을 리포지토리마다 반복하지 않는다.
+ * PathBuilder 는 EntityManager 와 무관하므로 컨텍스트가 여러 개여도 공유해도 된다.
+ */
+public final class EntityPathCache {
+
+    private static final Map<Class<?>, PathBuilder<?>> CACHE = new ConcurrentHashMap<>();
+
+    private EntityPathCache() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PathBuilder<T> pathBuilder(Class<T> domainClass) {
+        return (PathBuilder<T>) CACHE.computeIfAbsent(domainClass, type -> {
+            EntityPath<?> path = SimpleEntityPathResolver.INSTANCE.createPath(type);
+            return new PathBuilder<>(path.getType(), path.getMetadata());
+        });
+    }
+}
@@ -0,0 +1,174 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.ConstantImpl;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Querydsl 식 트리를 검사해서 인덱스를 탈 수 있는 조건만 허용한다.
+ * - 경로는 인덱스가 있는 프로퍼티만 허용한다.
+ * - 앞에 % 가 붙는 like, 빈 문자열 startsWith(like '%'), contains, endsWith, 함수로 감싼 컬럼은 거절한다.
+ * - 부정(ne, not, not in)과 or 는 범위 하나로 인덱스를 탈 수 없으므로 거절한다. 조건은 and 로만 묶는다.
+ * - 대소문자 무시 비교(equalsIgnoreCase, startsWithIgnoreCase, lower(x) = ?)는 소문자 컬럼 비교로 바꾼다.
+ */
+public class IndexedPredicateValidator {
+
+    private static final Set<Operator> ALLOWED_OPERATORS = new HashSet<>(Arrays.<Operator>asList(
+            Ops.AND,
+            Ops.EQ, Ops.LT, Ops.GT, Ops.LOE, Ops.GOE, Ops.BETWEEN,
+            Ops.IN, Ops.IS_NULL, Ops.IS_NOT_NULL,
+            Ops.STARTS_WITH, Ops.LIKE, Ops.LIKE_ESCAPE
+    ));
+
+    private final Class<?> rootType;
+    private final Set<String> indexedProperties;
+    private final Map<String, String> lowerCaseProperties;
+
+    /**
+     * @param indexedProperties   인덱스가 있는 프로퍼티 경로 (루트 엔티티 자체는 "")
+     * @param lowerCaseProperties 프로퍼티 -> 소문자로 정규화된 인덱스 프로퍼티
+     */
+    public IndexedPredicateValidator(Class<?> rootType, Set<String> indexedProperties,
+                                     Map<String, String> lowerCaseProperties) {
+        this.rootType = rootType;
+        this.indexedProperties = Collections.unmodifiableSet(new HashSet<>(indexedProperties));
+        this.lowerCaseProperties = lowerCaseProperties;
+    }
+
+    /**
+     * 안전한 조건으로 바꿔서 반환한다. 허용하지 않는 조건이면 UnsafePredicateException
+     */
+    public Predicate validate(Predicate predicate) {
+        if (predicate == null) {
+            return null;
+        }
+        return (Predicate) rewrite(predicate);
+    }
+
+    public boolean isIndexed(String property) {
+        return indexedProperties.contains(property);
+    }
+
+    private Expression<?> rewrite(Expression<?> expr) {
+        if (expr instanceof BooleanBuilder) {
+            Predicate value = ((BooleanBuilder) expr).getValue();
+            return value == null ? null : rewrite(value);
+        }
+        if (expr instanceof Constant || expr instanceof ParamExpression) {
+            return expr;
+        }
+        if (expr instanceof Path) {
+            checkIndexed((Path<?>) expr);
+            return expr;
+        }
+        if (expr instanceof Operation) {
+            return rewriteOperation((Operation<?>) expr);
+        }
+        throw new UnsafePredicateException("지원하지 않는 조건입니다: " + expr);
+    }
+
+    private Expression<?> rewriteOperation(Operation<?> operation) {
+        Operator operator = operation.getOperator();
+        List<Expression<?>> args = operation.getArgs();
+
+        if ((operator == Ops.STARTS_WITH || operator == Ops.STARTS_WITH_IC) && isEmptyConstant(args.get(1))) {
+            throw new UnsafePredicateException("빈 문자열 startsWith 는 전체 조회(like '%')가 됩니다: " + operation);
+        }
+        if (operator == Ops.EQ_IGNORE_CASE || operator == Ops.STARTS_WITH_IC) {
+            Path<?> lowerPath = lowerCasePath(args.get(0));
+            if (lowerPath != null && args.get(1) instanceof Constant) {
+                Operator rewritten = operator == Ops.EQ_IGNORE_CASE ? Ops.EQ : Ops.STARTS_WITH;
+                return ExpressionUtils.predicate(rewritten, lowerPath, lowerConstant(args.get(1)));
+            }
+        }
+        if (operator == Ops.EQ && args.get(0) instanceof Operation
+                && ((Operation<?>) args.get(0)).getOperator() == Ops.LOWER) {
+            Path<?> lowerPath = lowerCasePath(((Operation<?>) args.get(0)).getArg(0));
+            if (lowerPath != null && args.get(1) instanceof Constant) {
+                return ExpressionUtils.predicate(Ops.EQ, lowerPath, lowerConstant(args.get(1)));
+            }
+        }
+        if ((operator == Ops.LIKE || operator == Ops.LIKE_ESCAPE) && !isPrefixPattern(args.get(1))) {
+            throw new UnsafePredicateException("앞부분이 고정되지 않은 like 는 인덱스를 사용할 수 없습니다: " + operation);
+        }
+        if (!ALLOWED_OPERATORS.contains(operator)) {
+            throw new UnsafePredicateException("인덱스를 사용할 수 없는 연산입니다: " + operation);
+        }
+
+        Expression<?>[] rewrittenArgs = new Expression<?>[args.size()];
+        for (int i = 0; i < args.size(); i++) {
+            rewrittenArgs[i] = rewrite(args.get(i));
+        }
+        if (Boolean.class.equals(operation.getType())) {
+            return ExpressionUtils.predicate(operator, rewrittenArgs);
+        }
+        return ExpressionUtils.operation(operation.getType(), operator, rewrittenArgs);
+    }
+
+    private Path<?> lowerCasePath(Expression<?> expr) {
+        if (!(expr instanceof Path)) {
+            return null;
+        }
+        Path<?> path = (Path<?>) expr;
+        String lowerProperty = lowerCaseProperties.get(propertyOf(path));
+        if (lowerProperty == null || path.getMetadata().getParent() == null) {
+            return null;
+        }
+        return ExpressionUtils.path(String.class, path.getMetadata().getParent(), lowerProperty);
+    }
+
+    private static Expression<String> lowerConstant(Expression<?> constant) {
+        Object value = ((Constant<?>) constant).getConstant();
+        return ConstantImpl.create(value.toString().toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isEmptyConstant(Expression<?> expr) {
+        return expr instanceof Constant && String.valueOf(((Constant<?>) expr).getConstant()).isEmpty();
+    }
+
+    private static boolean isPrefixPattern(Expression<?> pattern) {
+        if (!(pattern instanceof Constant)) {
+            return false;
+        }
+        String value = String.valueOf(((Constant<?>) pattern).getConstant());
+        return !value.isEmpty() && value.charAt(0) != '%' && value.charAt(0) != '_';
+    }
+
+    private void checkIndexed(Path<?> path) {
+        String property = propertyOf(path);
+        if (!indexedProperties.contains(property)) {
+            throw new UnsafePredicateException("인덱스가 없는 프로퍼티입니다: " + property);
+        }
+    }
+
+    private String propertyOf(Path<?> path) {
+        Deque<String> names = new ArrayDeque<>();
+        Path<?> current = path;
+        while (current.getMetadata().getParent() != null) {
+            names.addFirst(current.getMetadata().getName());
+            current = current.getMetadata().getParent();
+        }
+        if (!rootType.isAssignableFrom(current.getType())) {
+            throw new UnsafePredicateException(rootType.getSimpleName() + " 의 경로가 아닙니다: " + path);
+        }
+        return String.join(".", names);
+    }
+}
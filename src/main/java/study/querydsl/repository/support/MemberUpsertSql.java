@@ -0,0 +1,40 @@
+package study.querydsl.repository.support;
+
+import study.querydsl.repository.support.SqlFunctionRegistry.Dialect;
+
+/**
+ * username(유니크 인덱스)을 키로 한 회원 upsert 문. 파라미터는 모두 (member_id, username, username_lower, age, team_id) 순서다.
+ * member_id 는 새 row 를 넣을 때만 쓰이고, 기존 row 는 id 를 유지한 채 age, team_id 를 바꾸고 version + 1 한다.
+ * 새 row 는 version 0 으로 넣는다. (Hibernate 와 같은 초기값)
+ */
+public final class MemberUpsertSql {
+
+    private MemberUpsertSql() {
+    }
+
+    public static String forDialect(Dialect dialect) {
+        switch (dialect) {
+            case H2:
+                return "merge into member m using (select"
+                        + " cast(? as bigint) member_id, cast(? as varchar(255)) username,"
+                        + " cast(? as varchar(255)) username_lower, cast(? as int) age, cast(? as bigint) team_id) s"
+                        + " on m.username = s.username"
+                        + " when matched then update set age = s.age, team_id = s.team_id, version = m.version + 1"
+                        + " when not matched then insert (member_id, username, username_lower, age, team_id, version)"
+                        + " values (s.member_id, s.username, s.username_lower, s.age, s.team_id, 0)";
+            case POSTGRESQL:
+                return "insert into member (member_id, username, username_lower, age, team_id, version)"
+                        + " values (?, ?, ?, ?, ?, 0)"
+                        + " on conflict (username) do update set age = excluded.age, team_id = excluded.team_id,"
+                        + " version = member.version + 1";
+            case MYSQL:
+                //uk 인 username 이 겹치면 update 한다. 배치를 한 문장으로 보내려면 드라이버에 rewriteBatchedStatements=true 가 필요하다.
+                return "insert into member (member_id, username, username_lower, age, team_id, version)"
+                        + " values (?, ?, ?, ?, ?, 0)"
+                        + " on duplicate key update age = values(age), team_id = values(team_id),"
+                        + " version = version + 1";
+            default:
+                throw new UnsupportedOperationException("member upsert is not supported for " + dialect);
+        }
+    }
+}
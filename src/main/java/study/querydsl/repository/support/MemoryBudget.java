@@ -0,0 +1,125 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.monitoring.QueryContext;
+
+/**
+ * 요청 하나가 영속성 컨텍스트에 올리는 엔티티 크기를 추정해서 한도(request-budget-bytes)를 넘으면 조회를 중단한다.
+ * 정확한 힙 사용량이 아니라 행마다 추정한 값(객체, 문자열, 스냅샷, EntityEntry)의 합이다.
+ * - 요청 범위는 MemoryBudgetInterceptor 가 연다. 요청 밖(배치 등)에서는 호출 하나가 범위다.
+ * - 스트리밍 조회는 넘겨준 행을 release 하므로 한번에 들고 있는 양만 센다.
+ * 메트릭: repository.result.bytes / repository.result.rows (repositoryMethod, 호출당 최대 추정치),
+ * repository.request.bytes (endpoint), repository.memory.budget.exceeded (repositoryMethod)
+ */
+@Component
+public class MemoryBudget {
+
+    private static final ThreadLocal<long[]> REQUEST_USED = new ThreadLocal<>();
+
+    private final long budgetBytes;
+    private final MeterRegistry meterRegistry;
+
+    public MemoryBudget(@Value("${repository.memory.request-budget-bytes:67108864}") long budgetBytes,
+                        MeterRegistry meterRegistry) {
+        this.budgetBytes = budgetBytes;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void beginRequest() {
+        REQUEST_USED.set(new long[1]);
+    }
+
+    public void endRequest(String endpoint) {
+        long[] used = REQUEST_USED.get();
+        REQUEST_USED.remove();
+        if (used != null && used[0] > 0) {
+            DistributionSummary.builder("repository.request.bytes")
+                    .baseUnit("bytes")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry)
+                    .record(used[0]);
+        }
+    }
+
+    /**
+     * 조회 하나의 사용량을 센다. try-with-resources 로 닫으면 남은 사용량이 요청 합계에 더해진다.
+     */
+    public Scope open() {
+        long[] requestUsed = REQUEST_USED.get();
+        return new Scope(QueryContext.repositoryMethod(), requestUsed != null ? requestUsed : new long[1]);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Java 8 String (객체 + char[]) 추정 크기
+     */
+    public static long stringBytes(String value) {
+        return value == null ? 0 : 56 + 2L * value.length();
+    }
+
+    public class Scope implements AutoCloseable {
+
+        private final String operation;
+        private final long[] requestUsed;
+        private long rows;
+        private long current;
+        private long peak;
+        private boolean aborted;
+
+        private Scope(String operation, long[] requestUsed) {
+            this.operation = operation;
+            this.requestUsed = requestUsed;
+        }
+
+        /**
+         * 한 행을 더한다. 요청 합계가 한도를 넘으면 MemoryBudgetExceededException
+         */
+        public void add(long bytes) {
+            rows++;
+            current += bytes;
+            peak = Math.max(peak, current);
+            long total = requestUsed[0] + current;
+            if (total > budgetBytes) {
+                aborted = true;
+                Counter.builder("repository.memory.budget.exceeded")
+                        .tag("repositoryMethod", operation)
+                        .register(meterRegistry)
+                        .increment();
+                throw new MemoryBudgetExceededException(operation, rows, total, budgetBytes);
+            }
+        }
+
+        /**
+         * 영속성 컨텍스트에서 내보낸 행은 더 이상 세지 않는다.
+         */
+        public void release(long bytes) {
+            current = Math.max(0, current - bytes);
+        }
+
+        /**
+         * 한도를 넘어 중단된 조회는 결과를 돌려주지 않으므로 요청 합계에 더하지 않는다.
+         */
+        @Override
+        public void close() {
+            if (!aborted) {
+                requestUsed[0] += current;
+            }
+            DistributionSummary.builder("repository.result.bytes")
+                    .baseUnit("bytes")
+                    .tag("repositoryMethod", operation)
+                    .register(meterRegistry)
+                    .record(peak);
+            DistributionSummary.builder("repository.result.rows")
+                    .tag("repositoryMethod", operation)
+                    .register(meterRegistry)
+                    .record(rows);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package study.querydsl.repository.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class MemoryBudgetExceededException extends RuntimeException {
+
+    private final long rows;
+    private final long estimatedBytes;
+
+    public MemoryBudgetExceededException(String operation, long rows, long estimatedBytes, long budgetBytes) {
+        super(operation + " 결과가 요청 메모리 한도를 넘었습니다. (" + rows + "건, 예상 " + estimatedBytes
+                + " bytes, 한도 " + budgetBytes + " bytes) 조건/페이징을 추가하거나 스트리밍 메서드(...Each)를 사용하세요.");
+        this.rows = rows;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+}
@@ -2,17 +2,17 @@ package study.querydsl.repository.support;
 import com.querydsl.core.types.EntityPath;
 
 import com.querydsl.core.types.Expression;
-import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.support.JpaEntityInformation;
-import
-        org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
-import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
@@ -29,7 +29,7 @@ org.springframework.data.jpa.repository.support.QuerydslRepositorySupport
  */
 @Repository
 public abstract class Querydsl4RepositorySupport {
-    private final Class domainClass;
+    private final Class<?> domainClass;
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
@@ -41,14 +41,13 @@ public abstract class Querydsl4RepositorySupport {
     @Autowired
     public void setEntityManager(EntityManager entityManager) {
         Assert.notNull(entityManager, "EntityManager must not be null!");
-        JpaEntityInformation entityInformation =
-                JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
-        SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
-        EntityPath path = resolver.createPath(entityInformation.getJavaType());
+        //엔티티 정보는 javaType(= domainClass)만 쓰므로 조회하지 않고, PathBuilder 는 캐시를 쓴다.
         this.entityManager = entityManager;
-        this.querydsl = new Querydsl(entityManager, new
-                PathBuilder<>(path.getType(), path.getMetadata()));
-        this.queryFactory = new JPAQueryFactory(entityManager);
+        this.querydsl = new Querydsl(entityManager, EntityPathCache.pathBuilder(domainClass));
+    }
+    @Autowired
+    public void setQueryFactory(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
     }
     @PostConstruct
     public void validate() {
@@ -90,4 +89,49 @@ public abstract class Querydsl4RepositorySupport {
         return PageableExecutionUtils.getPage(content, pageable,
                 countResult::fetchCount);
     }
-}
\ No newline at end of file
+
+    /**
+     * where value = (select max(sub.value) from .. sub where ..) 를 한 문장으로 실행한다.
+     * value, where 는 바깥 쿼리(from)와 서브쿼리(sub)에 각각 적용하므로 같은 엔티티의 다른 alias 를 넘긴다.
+     * 최대값 조회와 결과 조회가 같은 시점의 데이터를 본다.
+     */
+    protected <T, E extends EntityPath<T>, N extends Number & Comparable<?>> List<T> fetchWhereMax(
+            E from, E sub, Function<E, NumberExpression<N>> value, Function<E, Predicate> where) {
+        return selectFrom(from)
+                .where(where.apply(from))
+                .where(value.apply(from).eq(JPAExpressions
+                        .select(value.apply(sub).max())
+                        .from(sub)
+                        .where(where.apply(sub))))
+                .fetch();
+    }
+
+    protected <T, E extends EntityPath<T>, N extends Number & Comparable<?>> List<T> fetchWhereMax(
+            E from, E sub, Function<E, NumberExpression<N>> value) {
+        return fetchWhereMax(from, sub, value, e -> null);
+    }
+
+    /**
+     * select 절에 넣을 평균 서브쿼리. (select avg(sub.value) from .. sub)
+     * 바깥 쿼리와 같은 문장에서 계산하고, 비상관 서브쿼리라 DB 가 한번만 계산한다.
+     */
+    protected <E extends EntityPath<?>> JPQLQuery<Double> average(E sub, NumberExpression<?> value) {
+        return JPAExpressions.select(value.avg()).from(sub);
+    }
+
+    /**
+     * value >= (select avg(sub.value) from .. sub where sub.group = group) 를 상관 서브쿼리 한 문장으로 실행한다.
+     * select m from Member m where m.age >= (select avg(s.age) from Member s where s.team = m.team)
+     * JPQL 이므로 DB 에 상관없이 동작하고, group/value 는 from 과 sub 에 각각 적용하므로 alias 제약이 없다.
+     * group 이 null 인 행은 제외된다. 그룹 컬럼(team_id 등)에 인덱스가 있어야 행마다 그룹 범위만 읽는다.
+     */
+    protected <T, E extends EntityPath<T>, G> List<T> fetchGoeGroupAverage(
+            E from, E sub, Function<E, SimpleExpression<G>> group, Function<E, NumberExpression<?>> value) {
+        return selectFrom(from)
+                .where(value.apply(from).goe(JPAExpressions
+                        .select(value.apply(sub).avg())
+                        .from(sub)
+                        .where(group.apply(sub).eq(group.apply(from)))))
+                .fetch();
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.repository.support;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 낙관적 락 충돌(@Version)이 나면 트랜잭션을 새로 시작해서 다시 실행한다.
+ * 트랜잭션보다 바깥에서 동작하므로 @Transactional 과 같이 붙인다.
+ * 호출한 쪽에 이미 트랜잭션이 있으면 재시도하지 않는다. (롤백만 가능한 상태이므로)
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    /**
+     * 처음 실행을 포함한 최대 실행 횟수
+     */
+    int maxAttempts() default 5;
+
+    /**
+     * 첫 재시도 전 대기 시간. 재시도마다 두배로 늘리고 ±50% 를 흔든다.
+     */
+    long backoffMillis() default 10;
+
+    long maxBackoffMillis() default 200;
+}
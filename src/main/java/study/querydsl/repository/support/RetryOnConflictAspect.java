@@ -0,0 +1,113 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @RetryOnConflict 처리. 트랜잭션 인터셉터보다 먼저(바깥에서) 실행되어야 재시도마다 새 트랜잭션이 된다.
+ * repository.conflict.retry 카운터에 결과(retried, recovered, exhausted)를 남긴다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RetryOnConflictAspect {
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public RetryOnConflictAspect(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Around("@annotation(study.querydsl.repository.support.RetryOnConflict) " +
+            "|| @within(study.querydsl.repository.support.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        RetryOnConflict policy = policyOf(joinPoint);
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+
+        long backoff = policy.backoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                if (attempt > 1) {
+                    count(method, "recovered");
+                }
+                return result;
+            } catch (Throwable e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                if (attempt >= policy.maxAttempts()) {
+                    count(method, "exhausted");
+                    throw e;
+                }
+                count(method, "retried");
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, policy.maxBackoffMillis());
+            }
+        }
+    }
+
+    public static boolean isConflict(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            if (current instanceof OptimisticLockingFailureException
+                    || current instanceof OptimisticLockException
+                    || current instanceof StaleStateException) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static RetryOnConflict policyOf(ProceedingJoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        RetryOnConflict policy = AnnotatedElementUtils.findMergedAnnotation(signature.getMethod(), RetryOnConflict.class);
+        if (policy == null) {
+            policy = AnnotatedElementUtils.findMergedAnnotation(joinPoint.getTarget().getClass(), RetryOnConflict.class);
+        }
+        return policy;
+    }
+
+    /**
+     * 동시에 충돌한 요청이 같은 시점에 다시 부딪히지 않게 대기 시간을 흔든다.
+     */
+    private static void sleep(long backoffMillis) throws InterruptedException {
+        if (backoffMillis <= 0) {
+            return;
+        }
+        long jittered = backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        Thread.sleep(jittered);
+    }
+
+    private void count(String method, String result) {
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry != null) {
+            Counter.builder("repository.conflict.retry")
+                    .tag("method", method)
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package study.querydsl.repository.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 호출을 하나로 합친다.
+ * 처음 들어온 호출(leader)만 실행하고 나머지는 그 결과를 기다려서 같이 받는다.
+ * 정해진 시간 안에 결과가 오지 않으면 기다리던 호출은 직접 실행한다.
+ * 키는 equals/hashCode 가 바뀌지 않는 불변 객체여야 한다.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running == null) {
+            return lead(key, call, loader);
+        }
+
+        V result;
+        waiting.incrementAndGet();
+        try {
+            result = running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.incrementAndGet();
+            executed.incrementAndGet();
+            return loader.get();
+        } catch (ExecutionException e) {
+            //leader 의 실패도 같이 받아간 것이다.
+            collapsed.incrementAndGet();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for in-flight call", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        collapsed.incrementAndGet();
+        return result;
+    }
+
+    private V lead(K key, CompletableFuture<V> call, Supplier<V> loader) {
+        executed.incrementAndGet();
+        try {
+            V result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /** 실제로 loader 를 실행한 횟수 */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /** 다른 호출의 결과를 받아간 횟수 (timeout 으로 직접 실행한 호출은 빠진다) */
+    public long getCollapsedCount() {
+        return collapsed.get();
+    }
+
+    /** 기다리다 timeout 으로 직접 실행한 횟수 */
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    /** 지금 다른 호출의 결과를 기다리고 있는 호출 수 */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+}
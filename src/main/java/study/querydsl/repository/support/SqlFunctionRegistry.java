@@ -0,0 +1,280 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.TemplateExpression;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 조건절에서 쓰는 SQL 함수와 DB 별 인덱스 사용 가능 여부.
+ * 컬럼을 함수로 감싸면 일반 인덱스를 탈 수 없으므로 다음 순서로 대체한다.
+ * 1. 정규화된 컬럼이 있으면 그 컬럼을 비교한다. (lower(username) -> username_lower, MemberPredicates)
+ * 2. 표현식 인덱스를 지원하는 DB 에 해당 인덱스가 있으면 함수를 그대로 쓴다.
+ * 3. 둘 다 없으면 함수를 그대로 쓰고 findWrappedColumns 로 찾아서 경고한다.
+ */
+public class SqlFunctionRegistry {
+
+    public enum Dialect {
+        H2, POSTGRESQL, MYSQL, OTHER;
+
+        /**
+         * @param databaseProductName DatabaseMetaData.getDatabaseProductName() 또는 DatabaseDriver id (h2, postgresql 등)
+         */
+        public static Dialect of(String databaseProductName) {
+            String name = databaseProductName.toLowerCase(Locale.ROOT);
+            if (name.contains("h2")) {
+                return H2;
+            }
+            if (name.contains("postgres")) {
+                return POSTGRESQL;
+            }
+            if (name.contains("mysql") || name.contains("mariadb")) {
+                return MYSQL;
+            }
+            return OTHER;
+        }
+    }
+
+    public enum SqlFunction {
+        //H2 는 표현식 인덱스가 없다. MySQL 은 8.0.13 부터 함수 인덱스를 지원한다.
+        LOWER("lower", EnumSet.of(Dialect.POSTGRESQL, Dialect.MYSQL)),
+        UPPER("upper", EnumSet.of(Dialect.POSTGRESQL, Dialect.MYSQL)),
+        REPLACE("replace", EnumSet.of(Dialect.POSTGRESQL, Dialect.MYSQL)),
+        SUBSTRING("substring", EnumSet.of(Dialect.POSTGRESQL, Dialect.MYSQL)),
+        TRIM("trim", EnumSet.of(Dialect.POSTGRESQL, Dialect.MYSQL)),
+        LENGTH("length", EnumSet.of(Dialect.POSTGRESQL, Dialect.MYSQL));
+
+        private final String sqlName;
+        private final Set<Dialect> expressionIndexDialects;
+
+        SqlFunction(String sqlName, Set<Dialect> expressionIndexDialects) {
+            this.sqlName = sqlName;
+            this.expressionIndexDialects = expressionIndexDialects;
+        }
+
+        public String sqlName() {
+            return sqlName;
+        }
+
+        public boolean supportsExpressionIndex(Dialect dialect) {
+            return expressionIndexDialects.contains(dialect);
+        }
+    }
+
+    /**
+     * 조건절에서 함수로 감싼 컬럼
+     *
+     * @param function    함수 이름 (lower, replace ...)
+     * @param property    엔티티.프로퍼티 (Member.username)
+     * @param indexed     정규화 컬럼이나 표현식 인덱스로 인덱스를 탈 수 있는지
+     * @param alternative 대신 쓸 정규화 컬럼. 없으면 null
+     */
+    public static final class WrappedColumn {
+        private final String function;
+        private final String property;
+        private final boolean indexed;
+        private final String alternative;
+
+        WrappedColumn(String function, String property, boolean indexed, String alternative) {
+            this.function = function;
+            this.property = property;
+            this.indexed = indexed;
+            this.alternative = alternative;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public boolean isIndexed() {
+            return indexed;
+        }
+
+        public String getAlternative() {
+            return alternative;
+        }
+
+        @Override
+        public String toString() {
+            return function + "(" + property + ")";
+        }
+    }
+
+    private static final Set<Operator> CONNECTIVES = new HashSet<>(Arrays.<Operator>asList(Ops.AND, Ops.OR, Ops.NOT));
+    private static final Map<Operator, SqlFunction> OPERATOR_FUNCTIONS = new HashMap<>();
+    private static final Pattern FUNCTION_TEMPLATE = Pattern.compile("function\\(\\s*'(\\w+)'");
+
+    static {
+        OPERATOR_FUNCTIONS.put(Ops.LOWER, SqlFunction.LOWER);
+        OPERATOR_FUNCTIONS.put(Ops.UPPER, SqlFunction.UPPER);
+        OPERATOR_FUNCTIONS.put(Ops.TRIM, SqlFunction.TRIM);
+        OPERATOR_FUNCTIONS.put(Ops.SUBSTR_1ARG, SqlFunction.SUBSTRING);
+        OPERATOR_FUNCTIONS.put(Ops.SUBSTR_2ARGS, SqlFunction.SUBSTRING);
+        OPERATOR_FUNCTIONS.put(Ops.STRING_LENGTH, SqlFunction.LENGTH);
+        //내부적으로 lower(x) 로 바뀐다.
+        OPERATOR_FUNCTIONS.put(Ops.EQ_IGNORE_CASE, SqlFunction.LOWER);
+        OPERATOR_FUNCTIONS.put(Ops.STARTS_WITH_IC, SqlFunction.LOWER);
+    }
+
+    private final Dialect dialect;
+    //"lower:Member.username" -> 정규화 컬럼 프로퍼티
+    private final Map<String, String> normalizedColumns = new HashMap<>();
+    //"lower:Member.username" 형태. DB 에 표현식 인덱스를 만든 것만 등록한다.
+    private final Set<String> expressionIndexes = new HashSet<>();
+
+    public SqlFunctionRegistry(Dialect dialect) {
+        this.dialect = dialect;
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * function(source) 값을 미리 저장해 둔 인덱스 컬럼을 등록한다. 함수로 감싼 조건을 찾으면 대신 쓸 컬럼으로 알려준다.
+     * (Member.usernameLower 는 MemberPredicates 가 Member.normalize 로 값을 맞춰서 쓴다)
+     */
+    public SqlFunctionRegistry normalizedColumn(SqlFunction function, Class<?> entity, String source, String normalized) {
+        normalizedColumns.put(key(function, entity.getSimpleName() + "." + source), normalized);
+        return this;
+    }
+
+    /**
+     * DB 에 만들어 둔 표현식 인덱스를 등록한다. (postgres: create index .. on member (lower(username)))
+     * 현재 DB 가 표현식 인덱스를 지원하지 않으면 무시한다.
+     */
+    public SqlFunctionRegistry expressionIndex(SqlFunction function, Class<?> entity, String property) {
+        if (function.supportsExpressionIndex(dialect)) {
+            expressionIndexes.add(key(function, entity.getSimpleName() + "." + property));
+        }
+        return this;
+    }
+
+    /**
+     * 조건절에서 함수로 감싼 컬럼을 찾는다. 결과에는 인덱스로 대체 가능한 것도 들어있다.
+     */
+    public List<WrappedColumn> findWrappedColumns(Predicate predicate) {
+        if (predicate == null) {
+            return Collections.emptyList();
+        }
+        List<WrappedColumn> result = new ArrayList<>();
+        collectPredicate(predicate, result);
+        return result;
+    }
+
+    private void collectPredicate(Expression<?> expr, List<WrappedColumn> result) {
+        if (expr instanceof BooleanBuilder) {
+            Predicate value = ((BooleanBuilder) expr).getValue();
+            if (value != null) {
+                collectPredicate(value, result);
+            }
+            return;
+        }
+        if (!(expr instanceof Operation)) {
+            collectArgument(expr, result);
+            return;
+        }
+        Operation<?> operation = (Operation<?>) expr;
+        if (CONNECTIVES.contains(operation.getOperator())) {
+            for (Expression<?> arg : operation.getArgs()) {
+                collectPredicate(arg, result);
+            }
+            return;
+        }
+        SqlFunction implicit = OPERATOR_FUNCTIONS.get(operation.getOperator());
+        if (implicit != null && operation.getArg(0) instanceof Path) {
+            result.add(wrapped(implicit.sqlName(), implicit, (Path<?>) operation.getArg(0)));
+            return;
+        }
+        for (Expression<?> arg : operation.getArgs()) {
+            collectArgument(arg, result);
+        }
+    }
+
+    /**
+     * 비교 연산의 피연산자. 경로를 품은 함수 호출이면 기록한다.
+     */
+    private void collectArgument(Expression<?> expr, List<WrappedColumn> result) {
+        if (expr instanceof Operation) {
+            Operation<?> operation = (Operation<?>) expr;
+            SqlFunction function = OPERATOR_FUNCTIONS.get(operation.getOperator());
+            String name = function != null ? function.sqlName() : operation.getOperator().name().toLowerCase(Locale.ROOT);
+            addWrappedPaths(name, function, operation.getArgs(), result);
+        } else if (expr instanceof TemplateExpression) {
+            TemplateExpression<?> template = (TemplateExpression<?>) expr;
+            Matcher matcher = FUNCTION_TEMPLATE.matcher(template.getTemplate().toString());
+            String name = matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : template.getTemplate().toString();
+            addWrappedPaths(name, functionOf(name), template.getArgs(), result);
+        }
+    }
+
+    private void addWrappedPaths(String name, SqlFunction function, List<?> args, List<WrappedColumn> result) {
+        for (Object arg : args) {
+            if (arg instanceof Path) {
+                result.add(wrapped(name, function, (Path<?>) arg));
+            } else if (arg instanceof Expression) {
+                collectArgument((Expression<?>) arg, result);
+            }
+        }
+    }
+
+    private WrappedColumn wrapped(String name, SqlFunction function, Path<?> path) {
+        String property = propertyOf(path);
+        if (function == null) {
+            return new WrappedColumn(name, property, false, null);
+        }
+        String key = key(function, property);
+        //정규화 컬럼이 있어도 함수 그대로 쓰고 있으면 인덱스를 못 탄다. 대체 컬럼만 알려준다.
+        return new WrappedColumn(name, property, expressionIndexes.contains(key), normalizedColumns.get(key));
+    }
+
+    private static SqlFunction functionOf(String name) {
+        for (SqlFunction function : SqlFunction.values()) {
+            if (function.sqlName().equals(name)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    private static String key(SqlFunction function, String property) {
+        return function.sqlName() + ":" + property;
+    }
+
+    /**
+     * 별칭과 상관없이 엔티티.프로퍼티 (QMember("m").username -> Member.username)
+     */
+    private static String propertyOf(Path<?> path) {
+        Deque<String> names = new ArrayDeque<>();
+        Path<?> current = path;
+        while (current.getMetadata().getParent() != null) {
+            names.addFirst(current.getMetadata().getName());
+            current = current.getMetadata().getParent();
+        }
+        names.addFirst(current.getType().getSimpleName());
+        return String.join(".", names);
+    }
+}
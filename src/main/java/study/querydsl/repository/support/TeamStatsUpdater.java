@@ -0,0 +1,284 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 회원 insert/update/delete 를 팀 통계(TeamStats)에 증분으로 반영한다.
+ * flush 때는 세션에 팀별 증분(count, sum, 추가/삭제된 나이의 min/max)만 모으고,
+ * 커밋 직전(flush 뒤)에 팀마다 update 한 문장을 team_id 순서로 실행한다.
+ * - 회원 row 마다 왕복하지 않으므로 회원 insert 의 JDBC 배치가 유지된다.
+ * - 팀 row 락은 커밋 직전에만 잡으므로 같은 팀 writer 는 서로의 커밋 순간만 기다린다.
+ * - 여러 팀을 고치는 트랜잭션도 락 순서가 team_id 순서라 서로 교착되지 않는다.
+ * 엔티티 값을 덮어쓰지 않고 member_count = member_count + ? 처럼 DB 값에 더하므로 동시 변경이 사라지지 않는다.
+ * stale 인 팀은 건너뛴다. (조회할 때 다시 계산한다)
+ * 같은 트랜잭션에서 통계를 읽을 때는 applyPending 으로 모은 증분을 먼저 반영한다.
+ * MySQL 은 set 절을 왼쪽부터 바뀐 값으로 계산하므로 다른 컬럼을 읽는 stats_stale 을 먼저 둔다.
+ */
+@Component
+public class TeamStatsUpdater implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    //삭제(다른 팀으로 이동, 나이 변경 전 값 포함)가 있을 때 마지막 회원까지 빠졌거나
+    //삭제된 나이가 현재 min/max 경계값이면 (removedMin <= age_min, removedMax >= age_max) min/max 를 알 수 없으므로 stale 로 둔다.
+    private static final String APPLY = "update team set"
+            + " stats_stale = case when ? > 0 and (member_count + ? <= 0 or age_min is null or age_max is null"
+            + " or age_min >= ? or age_max <= ?) then true else false end,"
+            + " member_count = member_count + ?, age_sum = age_sum + ?,"
+            + " age_min = case when ? is not null and (age_min is null or ? < age_min) then ? else age_min end,"
+            + " age_max = case when ? is not null and (age_max is null or ? > age_max) then ? else age_max end"
+            + " where team_id = ? and stats_stale = false";
+
+    private static final String MARK_STALE = "update team set stats_stale = true where team_id = ?";
+
+    private final EntityManagerFactory emf;
+    private final ConcurrentMap<SharedSessionContractImplementor, PendingDeltas> pending = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> suppressed = new ThreadLocal<>();
+
+    public TeamStatsUpdater(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * 현재 트랜잭션에서 모은 증분을 바로 반영한다. 같은 트랜잭션에서 통계를 읽기 전에 flush 뒤에 호출한다.
+     */
+    public void applyPending(EntityManager em) {
+        PendingDeltas deltas = pending.get(em.unwrap(SessionImplementor.class));
+        if (deltas != null) {
+            deltas.apply(em.unwrap(SessionImplementor.class));
+        }
+    }
+
+    /**
+     * work 안에서 flush/커밋되는 회원 변경은 통계에 반영하지 않는다.
+     * 팀을 stale 로 따로 표시하는 벌크 가져오기용이다. (stale 이면 어차피 증분을 버린다)
+     */
+    public void withoutIncrements(Runnable work) {
+        Boolean previous = suppressed.get();
+        suppressed.set(Boolean.TRUE);
+        try {
+            work.run();
+        } finally {
+            if (previous == null) {
+                suppressed.remove();
+            } else {
+                suppressed.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member && !isSuppressed()) {
+            Long teamId = teamId(event.getPersister(), event.getState());
+            if (teamId != null) {
+                deltas(event.getSession()).team(teamId).add(age(event.getPersister(), event.getState()));
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member) || isSuppressed()) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Long newTeamId = teamId(persister, event.getState());
+        int newAge = age(persister, event.getState());
+        if (event.getOldState() == null) {
+            //이전 값을 모르면 증분을 낼 수 없다.
+            if (newTeamId != null) {
+                deltas(event.getSession()).team(newTeamId).stale = true;
+            }
+            return;
+        }
+        Long oldTeamId = teamId(persister, event.getOldState());
+        int oldAge = age(persister, event.getOldState());
+        if (Objects.equals(oldTeamId, newTeamId) && oldAge == newAge) {
+            return;
+        }
+        if (oldTeamId != null) {
+            deltas(event.getSession()).team(oldTeamId).remove(oldAge);
+        }
+        if (newTeamId != null) {
+            deltas(event.getSession()).team(newTeamId).add(newAge);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member && !isSuppressed()) {
+            Long teamId = teamId(event.getPersister(), event.getDeletedState());
+            if (teamId != null) {
+                deltas(event.getSession()).team(teamId).remove(age(event.getPersister(), event.getDeletedState()));
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private boolean isSuppressed() {
+        return suppressed.get() != null;
+    }
+
+    /**
+     * 세션(트랜잭션)마다 하나. 처음 만들 때 커밋 직전 반영과 트랜잭션 종료 후 정리를 등록한다.
+     * 롤백되면 before 는 실행되지 않고 after 에서 버린다.
+     */
+    private PendingDeltas deltas(EventSource session) {
+        PendingDeltas deltas = pending.get(session);
+        if (deltas == null) {
+            PendingDeltas created = new PendingDeltas();
+            pending.put(session, created);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) created::apply);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> {
+                created.completed = true;
+                created.teams.clear();
+                pending.remove(s, created);
+            });
+            deltas = created;
+        }
+        return deltas;
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    //프록시 팀도 id 는 초기화 없이 읽을 수 있다.
+    private static Long teamId(EntityPersister persister, Object[] state) {
+        Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        return team != null ? team.getId() : null;
+    }
+
+    private static int age(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+
+    private static final class PendingDeltas {
+        //team_id 순서로 update 해서 트랜잭션끼리 락 순서가 같게 한다.
+        private final TreeMap<Long, TeamDelta> teams = new TreeMap<>();
+        private boolean completed;
+
+        TeamDelta team(Long teamId) {
+            return teams.computeIfAbsent(teamId, id -> new TeamDelta());
+        }
+
+        void apply(SessionImplementor session) {
+            if (completed || teams.isEmpty()) {
+                return;
+            }
+            session.doWork(connection -> {
+                try (PreparedStatement apply = connection.prepareStatement(APPLY);
+                     PreparedStatement markStale = connection.prepareStatement(MARK_STALE)) {
+                    for (Map.Entry<Long, TeamDelta> entry : teams.entrySet()) {
+                        TeamDelta delta = entry.getValue();
+                        if (delta.stale) {
+                            markStale.setLong(1, entry.getKey());
+                            markStale.executeUpdate();
+                        } else if (delta.changed()) {
+                            delta.bind(apply, entry.getKey());
+                            apply.executeUpdate();
+                        }
+                    }
+                }
+            });
+            teams.clear();
+        }
+    }
+
+    private static final class TeamDelta {
+        private boolean stale;
+        private long count;
+        private long sum;
+        private int removed;
+        private Integer addedMin;
+        private Integer addedMax;
+        private Integer removedMin;
+        private Integer removedMax;
+
+        void add(int age) {
+            count++;
+            sum += age;
+            addedMin = addedMin == null ? age : Math.min(addedMin, age);
+            addedMax = addedMax == null ? age : Math.max(addedMax, age);
+        }
+
+        void remove(int age) {
+            count--;
+            sum -= age;
+            removed++;
+            removedMin = removedMin == null ? age : Math.min(removedMin, age);
+            removedMax = removedMax == null ? age : Math.max(removedMax, age);
+        }
+
+        boolean changed() {
+            return addedMin != null || removed > 0;
+        }
+
+        void bind(PreparedStatement ps, Long teamId) throws SQLException {
+            ps.setInt(1, removed);
+            ps.setLong(2, count);
+            setNullableInt(ps, 3, removedMin);
+            setNullableInt(ps, 4, removedMax);
+            ps.setLong(5, count);
+            ps.setLong(6, sum);
+            setNullableInt(ps, 7, addedMin);
+            setNullableInt(ps, 8, addedMin);
+            setNullableInt(ps, 9, addedMin);
+            setNullableInt(ps, 10, addedMax);
+            setNullableInt(ps, 11, addedMax);
+            setNullableInt(ps, 12, addedMax);
+            ps.setLong(13, teamId);
+        }
+    }
+}
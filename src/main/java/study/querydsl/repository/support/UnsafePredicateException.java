@@ -0,0 +1,12 @@
+package study.querydsl.repository.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsafePredicateException extends IllegalArgumentException {
+
+    public UnsafePredicateException(String message) {
+        super(message);
+    }
+}
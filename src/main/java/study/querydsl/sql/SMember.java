@@ -0,0 +1,61 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.ForeignKey;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * member 테이블. querydsl-sql MetaDataExporter 가 만드는 형태를 따르지만 손으로 관리한다.
+ * 스키마는 Hibernate(ddl-auto) 가 만들기 때문에 빌드 시점에 읽을 DB 나 DDL 이 없어서 codegen 을 돌리지 않는다.
+ * 스키마 이름은 두지 않고(접속한 기본 스키마), 테이블/컬럼 이름은 Hibernate 가 만드는 소문자 그대로 쓴다.
+ * Member 엔티티의 컬럼이 바뀌면 같이 고친다.
+ */
+public class SMember extends RelationalPathBase<SMember> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final SMember member = new SMember("member");
+
+    public final NumberPath<Long> memberId = createNumber("memberId", Long.class);
+
+    public final StringPath username = createString("username");
+
+    public final StringPath usernameLower = createString("usernameLower");
+
+    public final NumberPath<Integer> age = createNumber("age", Integer.class);
+
+    public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+    public final NumberPath<Long> version = createNumber("version", Long.class);
+
+    public final PrimaryKey<SMember> primary = createPrimaryKey(memberId);
+
+    public final ForeignKey<STeam> teamFk = createForeignKey(teamId, "team_id");
+
+    public SMember(String variable) {
+        super(SMember.class, forVariable(variable), null, "member");
+        addMetadata();
+    }
+
+    public SMember(PathMetadata metadata) {
+        super(SMember.class, metadata, null, "member");
+        addMetadata();
+    }
+
+    public void addMetadata() {
+        addMetadata(memberId, ColumnMetadata.named("member_id").withIndex(1).ofType(Types.BIGINT).withSize(19).notNull());
+        addMetadata(username, ColumnMetadata.named("username").withIndex(2).ofType(Types.VARCHAR).withSize(255));
+        addMetadata(usernameLower, ColumnMetadata.named("username_lower").withIndex(3).ofType(Types.VARCHAR).withSize(255));
+        addMetadata(age, ColumnMetadata.named("age").withIndex(4).ofType(Types.INTEGER).withSize(10).notNull());
+        addMetadata(teamId, ColumnMetadata.named("team_id").withIndex(5).ofType(Types.BIGINT).withSize(19));
+        addMetadata(version, ColumnMetadata.named("version").withIndex(6).ofType(Types.BIGINT).withSize(19));
+    }
+}
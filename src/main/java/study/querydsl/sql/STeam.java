@@ -0,0 +1,62 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.BooleanPath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * team 테이블. SMember 와 같은 이유로 손으로 관리한다. Team 엔티티(TeamStats 포함)의 컬럼이 바뀌면 같이 고친다.
+ */
+public class STeam extends RelationalPathBase<STeam> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final STeam team = new STeam("team");
+
+    public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+    public final StringPath name = createString("name");
+
+    public final NumberPath<Long> memberCount = createNumber("memberCount", Long.class);
+
+    public final NumberPath<Long> ageSum = createNumber("ageSum", Long.class);
+
+    public final NumberPath<Integer> ageMin = createNumber("ageMin", Integer.class);
+
+    public final NumberPath<Integer> ageMax = createNumber("ageMax", Integer.class);
+
+    public final BooleanPath statsStale = createBoolean("statsStale");
+
+    public final NumberPath<Long> version = createNumber("version", Long.class);
+
+    public final PrimaryKey<STeam> primary = createPrimaryKey(teamId);
+
+    public STeam(String variable) {
+        super(STeam.class, forVariable(variable), null, "team");
+        addMetadata();
+    }
+
+    public STeam(PathMetadata metadata) {
+        super(STeam.class, metadata, null, "team");
+        addMetadata();
+    }
+
+    public void addMetadata() {
+        addMetadata(teamId, ColumnMetadata.named("team_id").withIndex(1).ofType(Types.BIGINT).withSize(19).notNull());
+        addMetadata(name, ColumnMetadata.named("name").withIndex(2).ofType(Types.VARCHAR).withSize(255));
+        addMetadata(memberCount, ColumnMetadata.named("member_count").withIndex(3).ofType(Types.BIGINT).withSize(19).notNull());
+        addMetadata(ageSum, ColumnMetadata.named("age_sum").withIndex(4).ofType(Types.BIGINT).withSize(19).notNull());
+        addMetadata(ageMin, ColumnMetadata.named("age_min").withIndex(5).ofType(Types.INTEGER).withSize(10));
+        addMetadata(ageMax, ColumnMetadata.named("age_max").withIndex(6).ofType(Types.INTEGER).withSize(10));
+        addMetadata(statsStale, ColumnMetadata.named("stats_stale").withIndex(7).ofType(Types.BOOLEAN).withSize(1).notNull());
+        addMetadata(version, ColumnMetadata.named("version").withIndex(8).ofType(Types.BIGINT).withSize(19));
+    }
+}
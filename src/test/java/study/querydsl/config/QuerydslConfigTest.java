@@ -0,0 +1,76 @@
+package study.querydsl.config;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class QuerydslConfigTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void sharedInstrumentedFactory() {
+        assertThat(queryFactory).isInstanceOf(InstrumentedJPAQueryFactory.class);
+        em.persist(new Member("configMember", 10));
+
+        assertThat(memberJpaRepository.findByUsername_querydsl("configMember")).hasSize(1);
+        assertThat(queryFactory.selectFrom(member).where(member.username.eq("configMember")).fetchOne()).isNotNull();
+
+        Timer fetch = meterRegistry.find("querydsl.query").tag("operation", "fetch")
+                .tag("repositoryMethod", "MemberJpaRepository.findByUsername_querydsl").timer();
+        Timer fetchOne = meterRegistry.find("querydsl.query").tag("operation", "fetchOne").timer();
+        assertThat(fetch).isNotNull();
+        assertThat(fetch.count()).isGreaterThanOrEqualTo(1);
+        assertThat(fetchOne).isNotNull();
+    }
+
+    @Test
+    void iterateIsTimedOnClose() {
+        em.persist(new Member("iterateMember", 10));
+        Timer before = meterRegistry.find("querydsl.query").tag("operation", "iterate").timer();
+        long count = before == null ? 0 : before.count();
+
+        CloseableIterator<Member> rows = queryFactory.selectFrom(member)
+                .where(member.username.eq("iterateMember"))
+                .iterate();
+        try {
+            assertThat(rows.hasNext()).isTrue();
+            assertThat(rows.next().getUsername()).isEqualTo("iterateMember");
+            assertThat(meterRegistry.find("querydsl.query").tag("operation", "iterate").timer())
+                    .satisfiesAnyOf(
+                            timer -> assertThat(timer).isNull(),
+                            timer -> assertThat(timer.count()).isEqualTo(count));
+        } finally {
+            rows.close();
+        }
+        rows.close();
+
+        Timer iterate = meterRegistry.find("querydsl.query").tag("operation", "iterate").timer();
+        assertThat(iterate).isNotNull();
+        assertThat(iterate.count()).isEqualTo(count + 1);
+    }
+}
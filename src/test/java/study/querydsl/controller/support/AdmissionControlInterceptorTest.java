@@ -0,0 +1,57 @@
+package study.querydsl.controller.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlInterceptorTest {
+
+    //토큰 1개, 50ms 마다 1개 충전
+    StripedRateLimiter rateLimiter = new StripedRateLimiter(1, 1, 20);
+    SearchCostEstimator costEstimator = new SearchCostEstimator();
+
+    @Test
+    void clientHeaderDoesNotGetOwnBucket() {
+        //stripe 가 많아도 헤더 값이 아니라 접속 주소로 버킷을 고른다.
+        StripedRateLimiter striped = new StripedRateLimiter(256, 1, 20);
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(striped, costEstimator, false);
+
+        assertThat(interceptor.preHandle(request("a"), new MockHttpServletResponse(), null)).isTrue();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("b"), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+    }
+
+    @Test
+    void queuedRequestWaitsForTokens() {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(rateLimiter, costEstimator, false,
+                1000, new Semaphore(1));
+
+        assertThat(interceptor.preHandle(request("a"), new MockHttpServletResponse(), null)).isTrue();
+        long start = System.currentTimeMillis();
+        assertThat(interceptor.preHandle(request("a"), new MockHttpServletResponse(), null)).isTrue();
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+    }
+
+    @Test
+    void fullQueueRejects() {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(rateLimiter, costEstimator, false,
+                1000, new Semaphore(0));
+
+        assertThat(interceptor.preHandle(request("a"), new MockHttpServletResponse(), null)).isTrue();
+        assertThat(interceptor.preHandle(request("a"), new MockHttpServletResponse(), null)).isFalse();
+    }
+
+    private static MockHttpServletRequest request(String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/members");
+        request.setParameter("username", "member1");
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+}
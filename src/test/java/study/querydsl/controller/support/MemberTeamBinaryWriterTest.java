@@ -0,0 +1,30 @@
+package study.querydsl.controller.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberTeamBinaryWriterTest {
+
+    @Test
+    void teamNameWrittenOnce() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MemberTeamBinaryWriter writer = MemberTeamBinaryWriter.list(out);
+        writer.write(new MemberTeamDto(1L, "member1", 10, 1L, "teamA"));
+        writer.write(new MemberTeamDto(2L, "member2", 20, 1L, "teamA"));
+        writer.write(new MemberTeamDto(3L, "member3", 30, null, null));
+        writer.finish();
+
+        byte[] bytes = out.toByteArray();
+        String raw = new String(bytes, StandardCharsets.ISO_8859_1);
+        assertThat(raw).startsWith("MT");
+        assertThat(raw.indexOf("teamA")).isEqualTo(raw.lastIndexOf("teamA"));
+        assertThat(raw).doesNotContain("memberId");
+        assertThat(bytes[bytes.length - 1]).isEqualTo((byte) 0);
+    }
+}
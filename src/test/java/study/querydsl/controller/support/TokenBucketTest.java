@@ -0,0 +1,38 @@
+package study.querydsl.controller.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    @Test
+    void acquireAndRefill() {
+        TokenBucket bucket = new TokenBucket(10, 1, 0);
+
+        assertThat(bucket.tryAcquire(8, 0)).isTrue();
+        assertThat(bucket.tryAcquire(5, 0)).isFalse();
+        assertThat(bucket.tryAcquire(2, 0)).isTrue();
+        assertThat(bucket.tryAcquire(1, 500)).isFalse();
+
+        //3초 뒤 3개 충전
+        assertThat(bucket.tryAcquire(3, 3000)).isTrue();
+        assertThat(bucket.tryAcquire(1, 3000)).isFalse();
+
+        //최대 용량까지만 충전
+        assertThat(bucket.tryAcquire(11, 100_000)).isFalse();
+        assertThat(bucket.tryAcquire(10, 100_000)).isTrue();
+    }
+
+    @Test
+    void fractionalRefillIsCarriedOver() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        assertThat(bucket.tryAcquire(10, 0)).isTrue();
+
+        //500ms 에 1.5개. 1개를 쓰고 남은 0.5개는 다음 충전에 넘어간다.
+        assertThat(bucket.tryAcquire(1, 500)).isTrue();
+        assertThat(bucket.tryAcquire(2, 1001)).isTrue();
+        assertThat(bucket.tryAcquire(1, 1001)).isFalse();
+        assertThat(bucket.millisUntil(1, 1001)).isBetween(1L, 334L);
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.entity;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 여러 스레드에서 Member 를 insert 할 때 id 할당 방식별 처리량.
+ * - none: insert 마다 시퀀스 조회 (예전 기본 설정과 같다)
+ * - pooled: 50개씩 받지만 모든 스레드가 블록 하나를 같이 쓴다
+ * - pooled-lotl: 스레드마다 블록을 따로 받는다 (현재 설정)
+ * ./gradlew loadTest
+ */
+@Tag("load")
+class IdAllocationBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSACTIONS_PER_THREAD = 50;
+    private static final int INSERTS_PER_TRANSACTION = 100;
+
+    @Test
+    void insertThroughput() throws Exception {
+        for (String optimizer : new String[]{"none", "pooled", "pooled-lotl"}) {
+            for (String batchSize : new String[]{"0", "50"}) {
+                long perSecond = run(optimizer, batchSize);
+                System.out.println("optimizer = " + optimizer + ", batch_size = " + batchSize
+                        + ", inserts = " + perSecond + "/s");
+            }
+        }
+    }
+
+    private long run(String optimizer, String batchSize) throws Exception {
+        String dbName = "idbench_" + optimizer.replace('-', '_') + "_" + batchSize;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .run("--spring.main.web-application-type=none",
+                        "--spring.datasource.url=jdbc:h2:mem:" + dbName + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=" + optimizer,
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "--member.search.index.threads=1")) {
+            EntityManager em = context.getBean(EntityManager.class);
+            TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int tx = 0; tx < TRANSACTIONS_PER_THREAD; tx++) {
+                        int transaction = tx;
+                        transactionTemplate.executeWithoutResult(status -> {
+                            for (int i = 0; i < INSERTS_PER_TRANSACTION; i++) {
+                                em.persist(new Member("idbench" + thread + "_" + transaction + "_" + i, i));
+                            }
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            executor.shutdown();
+
+            int total = THREADS * TRANSACTIONS_PER_THREAD * INSERTS_PER_TRANSACTION;
+            Long count = transactionTemplate.execute(status ->
+                    em.createQuery("select count(m) from Member m", Long.class).getSingleResult());
+            assertThat(count).isEqualTo(total);
+            return total * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedNanos);
+        }
+    }
+}
@@ -22,10 +22,10 @@ public class MemberTest {
         Team teamB = new Team("teamB");
         em.persist(teamA);
         em.persist(teamB);
-        Member member1 = new Member("member1", 10, teamA);
-        Member member2 = new Member("member2", 20, teamA);
-        Member member3 = new Member("member3", 30, teamB);
-        Member member4 = new Member("member4", 40, teamB);
+        Member member1 = new Member("entityMember1", 10, teamA);
+        Member member2 = new Member("entityMember2", 20, teamA);
+        Member member3 = new Member("entityMember3", 30, teamB);
+        Member member4 = new Member("entityMember4", 40, teamB);
         em.persist(member1);
         em.persist(member2);
         em.persist(member3);
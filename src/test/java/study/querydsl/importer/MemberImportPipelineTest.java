@@ -0,0 +1,180 @@
+package study.querydsl.importer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 파이프라인이 배치마다 따로 커밋하므로 @Transactional 을 붙이지 않는다. (데이터가 남으므로 이름을 겹치지 않게 한다)
+ */
+@SpringBootTest(properties = {
+        "member.import.batch-size=10",
+        "member.import.parse-threads=2",
+        "member.import.writer-threads=3",
+        "member.import.queue-capacity=2"
+})
+class MemberImportPipelineTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberImportPipeline pipeline;
+
+    @Test
+    void importCsvResolvesTeamsByName() {
+        String prefix = "csv-" + UUID.randomUUID();
+        Long existingTeamId = transactionTemplate.execute(status -> {
+            Team team = new Team(prefix + "-teamA");
+            em.persist(team);
+            return team.getId();
+        });
+        StringBuilder csv = new StringBuilder("username,age,teamName\n");
+        for (int i = 0; i < 95; i++) {
+            csv.append(prefix).append("-member").append(i).append(',').append(i)
+                    .append(',').append(i % 2 == 0 ? prefix + "-teamA" : prefix + "-teamB").append('\n');
+        }
+        csv.append('"').append(prefix).append("-no,team\",7,\n");
+
+        ImportResult result = pipeline.importLines(prefix, reader(csv.toString()), ImportFormat.CSV);
+
+        assertThat(result.getImported()).isEqualTo(96);
+        assertThat(result.getTeams()).isEqualTo(2);
+        List<Member> members = membersStartingWith(prefix);
+        assertThat(members).hasSize(96);
+        assertThat(members).filteredOn(m -> m.getUsername().endsWith("-member0"))
+                .extracting(m -> m.getTeam().getId()).containsExactly(existingTeamId);
+        assertThat(members).filteredOn(m -> m.getUsername().equals(prefix + "-no,team"))
+                .extracting(Member::getTeam).containsOnlyNulls();
+        //새 팀은 한번만 만들어진다.
+        List<Team> teamB = transactionTemplate.execute(status -> em
+                .createQuery("select t from Team t where t.name = :name", Team.class)
+                .setParameter("name", prefix + "-teamB")
+                .getResultList());
+        assertThat(teamB).hasSize(1);
+        //회원을 changeTeam 없이 넣었으므로 팀 통계는 다시 계산해야 한다.
+        Team teamA = transactionTemplate.execute(status -> em.find(Team.class, existingTeamId));
+        assertThat(teamA.getStats().isStale()).isTrue();
+    }
+
+    @Test
+    void restartSkipsCommittedBatches() {
+        String prefix = "ndjson-" + UUID.randomUUID();
+        List<String> lines = IntStream.range(0, 35)
+                .mapToObj(i -> "{\"username\":\"" + prefix + "-member" + i + "\",\"age\":" + i
+                        + ",\"teamName\":\"" + prefix + "-team\"}")
+                .collect(Collectors.toList());
+
+        //앞의 두 배치만 넣고 중단된 상황
+        ImportResult first = pipeline.importLines(prefix, reader(String.join("\n", lines.subList(0, 20))), ImportFormat.NDJSON);
+        ImportResult second = pipeline.importLines(prefix, reader(String.join("\n", lines)), ImportFormat.NDJSON);
+
+        assertThat(first.getImported()).isEqualTo(20);
+        assertThat(second.getSkippedBatches()).isEqualTo(2);
+        assertThat(second.getImported()).isEqualTo(15);
+        assertThat(membersStartingWith(prefix)).hasSize(35);
+    }
+
+    @Test
+    void changedBatchIsNotSkipped() {
+        String prefix = "changed-" + UUID.randomUUID();
+        List<String> lines = IntStream.range(0, 30)
+                .mapToObj(i -> prefix + "-member" + i + "," + i)
+                .collect(Collectors.toList());
+
+        //마지막 배치가 5줄로 커밋된 뒤 파일 끝이 늘어난 상황
+        pipeline.importLines(prefix, reader(String.join("\n", lines.subList(0, 25))), ImportFormat.CSV);
+
+        assertThatThrownBy(() -> pipeline.importLines(prefix, reader(String.join("\n", lines)), ImportFormat.CSV))
+                .isInstanceOf(IllegalStateException.class)
+                .hasStackTraceContaining("was committed with 5 lines, but now has 10 lines");
+        assertThat(membersStartingWith(prefix)).hasSize(25);
+    }
+
+    @Test
+    void ndjsonRequiresUsernameAndAge() {
+        String prefix = "ndjson-invalid-" + UUID.randomUUID();
+
+        assertThatThrownBy(() -> pipeline.importLines(prefix,
+                reader("{\"username\":\"" + prefix + "-member\"}"), ImportFormat.NDJSON))
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class)
+                .hasStackTraceContaining("age");
+        assertThatThrownBy(() -> pipeline.importLines(prefix + "-2",
+                reader("{\"age\":10}"), ImportFormat.NDJSON))
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class)
+                .hasStackTraceContaining("username");
+        assertThat(membersStartingWith(prefix)).isEmpty();
+    }
+
+    @Test
+    @Timeout(30)
+    void parseErrorStopsAllStages() {
+        String prefix = "broken-" + UUID.randomUUID();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            csv.append(prefix).append("-member").append(i).append(',')
+                    .append(i == 150 ? "abc" : String.valueOf(i)).append('\n');
+        }
+
+        assertThatThrownBy(() -> pipeline.importLines(prefix, reader(csv.toString()), ImportFormat.CSV))
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseInstanceOf(NumberFormatException.class);
+        //line 151 이 있는 배치는 커밋되지 않는다.
+        assertThat(membersStartingWith(prefix))
+                .extracting(Member::getUsername)
+                .doesNotContain(prefix + "-member150");
+    }
+
+    /**
+     * write 단계가 실패해도 앞 단계가 꽉 찬 큐에 끝 표시를 넣으려다 멈추지 않는다.
+     */
+    @Test
+    @Timeout(30)
+    void writeErrorDoesNotHang() {
+        String prefix = "duplicate-" + UUID.randomUUID();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            //username 은 유니크하다.
+            csv.append(prefix).append("-member").append(i == 5 ? 4 : i).append(',').append(i).append('\n');
+        }
+
+        assertThatThrownBy(() -> pipeline.importLines(prefix, reader(csv.toString()), ImportFormat.CSV))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member import failed");
+        //중복이 있는 첫 배치는 커밋되지 않는다.
+        assertThat(membersStartingWith(prefix))
+                .extracting(Member::getUsername)
+                .doesNotContain(prefix + "-member0");
+    }
+
+    private List<Member> membersStartingWith(String prefix) {
+        return transactionTemplate.execute(status -> em
+                .createQuery("select m from Member m left join fetch m.team where m.username like :prefix", Member.class)
+                .setParameter("prefix", prefix + "%")
+                .getResultList());
+    }
+
+    private static BufferedReader reader(String content) {
+        return new BufferedReader(new StringReader(content));
+    }
+}
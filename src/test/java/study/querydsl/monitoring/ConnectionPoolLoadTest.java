@@ -0,0 +1,89 @@
+package study.querydsl.monitoring;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 동시 요청 수를 늘려가며 커넥션 획득 대기 시간을 본다.
+ * 풀 크기를 넘어서는 지점부터 acquire max 와 pending 이 늘어난다.
+ * ./gradlew loadTest
+ */
+@Tag("load")
+@SpringBootTest
+class ConnectionPoolLoadTest {
+
+    private static final int CALLS_PER_THREAD = 200;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void poolExhaustion() throws Exception {
+        int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        System.out.println("poolSize = " + poolSize);
+
+        for (int threads = 1; threads <= poolSize * 4; threads *= 2) {
+            Timer acquire = meterRegistry.find("db.connection.acquire")
+                    .tag("repositoryMethod", "MemberRepositoryImpl.searchPageComplex")
+                    .timer();
+            long beforeCount = acquire == null ? 0 : acquire.count();
+            double beforeTotal = acquire == null ? 0 : acquire.totalTime(TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            run(threads);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            acquire = meterRegistry.find("db.connection.acquire")
+                    .tag("repositoryMethod", "MemberRepositoryImpl.searchPageComplex")
+                    .timer();
+            assertThat(acquire).isNotNull();
+            long count = acquire.count() - beforeCount;
+            double avgAcquireMs = (acquire.totalTime(TimeUnit.MILLISECONDS) - beforeTotal) / count;
+            System.out.printf("threads=%d elapsed=%dms calls/s=%.0f avgAcquire=%.3fms%n",
+                    threads, elapsedMs, count * 1000.0 / Math.max(elapsedMs, 1), avgAcquireMs);
+        }
+    }
+
+    private void run(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int call = 0; call < CALLS_PER_THREAD; call++) {
+                        memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 10));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
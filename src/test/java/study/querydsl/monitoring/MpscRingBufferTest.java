@@ -0,0 +1,68 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpscRingBufferTest {
+
+    @Test
+    void dropsWhenFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+        assertThat(buffer.getDroppedCount()).isEqualTo(2);
+        assertThat(buffer.poll()).isEqualTo(0);
+        assertThat(buffer.offer(6)).isTrue();
+        assertThat(buffer.poll()).isEqualTo(1);
+        assertThat(buffer.poll()).isEqualTo(2);
+        assertThat(buffer.poll()).isEqualTo(3);
+        assertThat(buffer.poll()).isEqualTo(6);
+        assertThat(buffer.poll()).isNull();
+    }
+
+    @Test
+    void concurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(256);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> received = new HashSet<>();
+        while (received.size() < producers * perProducer) {
+            Integer value = buffer.poll();
+            if (value != null) {
+                assertThat(received.add(value)).isTrue();
+            }
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(buffer.poll()).isNull();
+        executor.shutdown();
+    }
+
+    @Test
+    void countBinds() {
+        assertThat(SlowQueryLog.countBinds("select * from member where username = ? and age > ?")).isEqualTo(2);
+        assertThat(SlowQueryLog.countBinds("select * from member where username = '?' and age > ?")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,114 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import study.querydsl.QuerydslApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 기본 설정과 fast-start 프로필의 기동 시간, 첫 요청까지의 시간을 비교한다.
+ * 한 JVM 에서 차례로 띄우면 뒤에 띄운 쪽이 클래스 로딩, JIT 덕을 보므로 매번 새 JVM 을 띄우고 순서도 번갈아 바꾼다.
+ * 각 JVM 은 자기 메모리 DB 에 스키마를 만든다. (ddl-auto=create)
+ * ./gradlew loadTest
+ */
+@Tag("load")
+class StartupBenchmarkTest {
+
+    private static final int ROUNDS = 4;
+    private static final long TIMEOUT_MS = 120_000;
+
+    @Test
+    void timeToFirstRequest() throws Exception {
+        List<Long> defaultMs = new ArrayList<>();
+        List<Long> fastStartMs = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            if (round % 2 == 0) {
+                defaultMs.add(bootAndServe(round));
+                fastStartMs.add(bootAndServe(round, "fast-start"));
+            } else {
+                fastStartMs.add(bootAndServe(round, "fast-start"));
+                defaultMs.add(bootAndServe(round));
+            }
+        }
+
+        System.out.println("time to first request (avg of " + ROUNDS + " fresh JVMs): default = " + average(defaultMs)
+                + "ms " + defaultMs + ", fast-start = " + average(fastStartMs) + "ms " + fastStartMs);
+    }
+
+    /**
+     * 새 JVM 으로 애플리케이션을 띄우고 첫 요청이 성공할 때까지의 시간(JVM 시작 포함)
+     */
+    private long bootAndServe(int round, String... profiles) throws Exception {
+        int port = freePort();
+        File log = Files.createTempFile("startup-benchmark-", ".log").toFile();
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                QuerydslApplication.class.getName(),
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:startup" + round + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create"));
+        if (profiles.length > 0) {
+            command.add("--spring.profiles.active=" + String.join(",", profiles));
+        }
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        try {
+            while (!firstRequestSucceeds(port)) {
+                assertThat(process.isAlive()).as("application exited. see %s", log).isTrue();
+                assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                        .as("no response within %dms. see %s", TIMEOUT_MS, log)
+                        .isLessThan(TIMEOUT_MS);
+                Thread.sleep(20);
+            }
+            long firstRequestMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.println((profiles.length > 0 ? String.join(",", profiles) : "default")
+                    + " first request = " + firstRequestMs + "ms");
+            return firstRequestMs;
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean firstRequestSucceeds(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/v2/members?size=1")
+                .openConnection();
+        try {
+            return connection.getResponseCode() / 100 == 2;
+        } catch (IOException e) {
+            //아직 포트를 열지 않았다.
+            return false;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long average(List<Long> values) {
+        return Math.round(values.stream().mapToLong(Long::longValue).average().orElse(0));
+    }
+}
@@ -0,0 +1,243 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.RetryOnConflict;
+import study.querydsl.repository.support.RetryOnConflictAspect;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 트랜잭션 커밋 시점의 충돌을 봐야 하므로 @Transactional 을 붙이지 않는다. (데이터가 남으므로 이름을 겹치지 않게 한다)
+ */
+@SpringBootTest
+class MemberCommandRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberCommandRepository memberCommandRepository;
+
+    @Autowired
+    ConflictingWriter conflictingWriter;
+
+    @Test
+    void conflictIsRetriedInNewTransaction() {
+        Long memberId = createMembers("retryMember", 1).get(0);
+        conflictingWriter.reset();
+
+        conflictingWriter.addAge(memberId, 1);
+
+        Member member = transactionTemplate.execute(status -> em.find(Member.class, memberId));
+        //첫 시도는 다른 트랜잭션의 갱신(+10)과 충돌하고, 두번째 시도가 최신 값에 +1 을 한다.
+        assertThat(conflictingWriter.attempts()).isEqualTo(2);
+        assertThat(member.getAge()).isEqualTo(11);
+        assertThat(member.getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    void conflictInsideCallerTransactionIsNotRetried() {
+        Long memberId = createMembers("noRetryMember", 1).get(0);
+        conflictingWriter.reset();
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(
+                status -> conflictingWriter.addAge(memberId, 1)))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(conflictingWriter.attempts()).isEqualTo(1);
+    }
+
+    /**
+     * 같은 작업(나이 +1)을 낙관적 락 + 재시도와 select ... for update 로 각각 실행해 처리량을 비교한다.
+     * 회원마다 팀이 다른 경우와 모든 회원이 한 팀인 경우(팀 통계 row 를 같이 고친다)를 모두 본다.
+     * 충돌이 드문 경우(회원 100명 이상)는 낙관적 락이 더 빨라야 한다. 10명은 재시도가 많아 결과만 출력한다.
+     * ./gradlew loadTest
+     */
+    @Tag("load")
+    @Test
+    void optimisticVersusPessimistic() throws Exception {
+        int threads = 16;
+        int operations = 5_000;
+
+        for (boolean sameTeam : new boolean[]{false, true}) {
+            for (int members : new int[]{1000, 100, 10}) {
+                String prefix = (sameTeam ? "sameTeam" : "ownTeam") + members + "_";
+                List<Long> optimisticIds = createMembers("optimistic" + prefix, members, sameTeam);
+                List<Long> pessimisticIds = createMembers("pessimistic" + prefix, members, sameTeam);
+
+                AtomicInteger exhausted = new AtomicInteger();
+                long optimistic = run(threads, operations, i -> {
+                    try {
+                        memberCommandRepository.addAge(pick(optimisticIds), 1);
+                    } catch (RuntimeException e) {
+                        if (!RetryOnConflictAspect.isConflict(e)) {
+                            throw e;
+                        }
+                        exhausted.incrementAndGet();
+                    }
+                });
+                long pessimistic = run(threads, operations,
+                        i -> transactionTemplate.executeWithoutResult(status -> {
+                            Member member = em.find(Member.class, pick(pessimisticIds), LockModeType.PESSIMISTIC_WRITE);
+                            member.setAge(member.getAge() + 1);
+                        }));
+
+                //재시도를 다 써버린 것만 빠지고 갱신이 사라지지는 않는다.
+                assertThat(sumOfAges(optimisticIds)).isEqualTo(operations - exhausted.get());
+                assertThat(sumOfAges(pessimisticIds)).isEqualTo(operations);
+                long optimisticOps = operations * 1000L / Math.max(1, optimistic);
+                long pessimisticOps = operations * 1000L / Math.max(1, pessimistic);
+                System.out.println("sameTeam = " + sameTeam + ", members = " + members
+                        + ", optimistic = " + optimisticOps + " ops/s"
+                        + " (exhausted = " + exhausted.get() + ")"
+                        + ", pessimistic = " + pessimisticOps + " ops/s");
+                if (members >= 100) {
+                    assertThat(optimisticOps).isGreaterThan(pessimisticOps);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameTeamMembersDoNotConflict() throws Exception {
+        List<Long> ids = createMembers("sameTeamMember", 8, true);
+
+        //팀 통계는 증분 update 라서 같은 팀의 다른 회원을 동시에 고쳐도 재시도 없이 끝나야 한다.
+        run(8, 8, i -> transactionTemplate.executeWithoutResult(status -> {
+            Member member = em.find(Member.class, ids.get((int) i));
+            member.setAge(member.getAge() + 1);
+        }));
+
+        assertThat(sumOfAges(ids)).isEqualTo(8);
+    }
+
+    private List<Long> createMembers(String prefix, int count) {
+        return createMembers(prefix, count, false);
+    }
+
+    private List<Long> createMembers(String prefix, int count, boolean sameTeam) {
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            Team shared = null;
+            if (sameTeam) {
+                shared = new Team(prefix + "team");
+                em.persist(shared);
+            }
+            for (int i = 0; i < count; i++) {
+                Team team = shared;
+                if (team == null) {
+                    team = new Team(prefix + "team" + i);
+                    em.persist(team);
+                }
+                Member member = new Member(prefix + i, 0, team);
+                em.persist(member);
+                ids.add(member.getId());
+            }
+            return ids;
+        });
+    }
+
+    private long sumOfAges(List<Long> ids) {
+        return transactionTemplate.execute(status -> {
+            long sum = 0;
+            for (Long id : ids) {
+                sum += em.find(Member.class, id).getAge();
+            }
+            return sum;
+        });
+    }
+
+    private static Long pick(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    /**
+     * @return 걸린 시간(ms)
+     */
+    private static long run(int threads, int operations, LongConsumer operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            long index = i;
+            futures.add(executor.submit(() -> operation.accept(index)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ConflictingWriter conflictingWriter(EntityManager em, PlatformTransactionManager transactionManager) {
+            return new ConflictingWriter(em, transactionManager);
+        }
+    }
+
+    /**
+     * 첫 시도 중간에 다른 트랜잭션이 같은 회원을 고쳐서 충돌을 만든다.
+     */
+    @RetryOnConflict
+    @Transactional
+    static class ConflictingWriter {
+
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final EntityManager em;
+        private final TransactionTemplate requiresNew;
+
+        ConflictingWriter(EntityManager em, PlatformTransactionManager transactionManager) {
+            this.em = em;
+            this.requiresNew = new TransactionTemplate(transactionManager);
+            this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+
+        public void addAge(Long memberId, int delta) {
+            Member member = em.find(Member.class, memberId);
+            if (attempts.incrementAndGet() == 1) {
+                requiresNew.executeWithoutResult(status -> {
+                    Member concurrent = em.find(Member.class, memberId);
+                    concurrent.setAge(concurrent.getAge() + 10);
+                });
+            }
+            member.setAge(member.getAge() + delta);
+        }
+
+        public int attempts() {
+            return attempts.get();
+        }
+
+        public void reset() {
+            attempts.set(0);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -86,4 +87,24 @@ class MemberJpaRepositoryTest {
         assertThat(result1).extracting("username").containsExactly("member4");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllEachDetachesRows() {
+        for (int i = 0; i < 5; i++) {
+            memberJpaRepository.save(new Member("eachMember" + i, 6000 + i));
+        }
+        em.flush();
+        em.clear();
+
+        List<Member> seen = new ArrayList<>();
+        memberJpaRepository.findAllEach(m -> {
+            if (m.getUsername().startsWith("eachMember")) {
+                seen.add(m);
+            }
+        });
+
+        assertThat(seen).extracting("username")
+                .containsExactlyInAnyOrder("eachMember0", "eachMember1", "eachMember2", "eachMember3", "eachMember4");
+        assertThat(seen).noneMatch(em::contains);
+    }
+}
@@ -5,17 +5,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSyncDto;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.dto.UpsertResult;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.UnsafePredicateException;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 @SpringBootTest
@@ -28,6 +39,12 @@ class MemberRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MemberPredicateExecutor memberPredicateExecutor;
+
+    @Autowired
+    TeamRepository teamRepository;
+
     @Test
     void basicTest() {
         Member member = new Member("member1", 10);
@@ -99,9 +116,240 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    void searchColumnsTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 1010, teamA));
+        em.persist(new Member("member2", 1020, teamA));
+        em.persist(new Member("member3", 1030, teamB));
+        em.persist(new Member("member4", 1040));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(1015);
+
+        MemberTeamColumns result = memberRepository.searchColumns(condition);
+
+        assertThat(result.getSize()).isEqualTo(3);
+        assertThat(result.getUsernames()).containsExactlyInAnyOrder("member2", "member3", "member4");
+        assertThat(result.getTeamNames()).containsExactlyInAnyOrder("teamA", "teamB");
+        for (int i = 0; i < result.getSize(); i++) {
+            if (result.getUsernames()[i].equals("member4")) {
+                assertThat(result.getTeamCodes()[i]).isEqualTo(MemberTeamColumns.NO_TEAM);
+            } else {
+                assertThat(result.getTeamNames()[result.getTeamCodes()[i]]).isNotNull();
+            }
+        }
+    }
+
+    @Test
+    void searchBatchTest() {
+        Team teamA = new Team("batchTeamA");
+        Team teamB = new Team("batchTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition byTeamA = new MemberSearchCondition();
+        byTeamA.setTeamName("batchTeamA");
+        MemberSearchCondition byTeamB = new MemberSearchCondition();
+        byTeamB.setTeamName("batchTeamB");
+        byTeamB.setAgeGoe(35);
+        MemberSearchCondition noMatch = new MemberSearchCondition();
+        noMatch.setTeamName("batchTeamC");
+
+        em.flush();
+        em.clear();
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(Arrays.asList(byTeamA, byTeamB, noMatch));
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0)).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(result.get(1)).extracting("username").containsExactly("member4");
+        assertThat(result.get(2)).isEmpty();
+    }
+
+    @Test
+    void usernameMatchTest() {
+        em.persist(new Member("PrefixUser1", 10));
+        em.persist(new Member("prefixUser2", 20));
+        em.persist(new Member("otherPrefixUser", 30));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("prefixuser");
+
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberRepository.search(condition)).isEmpty();
+
+        condition.setUsernameMatch(UsernameMatch.IGNORE_CASE_PREFIX);
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("PrefixUser1", "prefixUser2");
+
+        condition.setUsername("PREFIXUSER1");
+        condition.setUsernameMatch(UsernameMatch.IGNORE_CASE);
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .containsExactly("PrefixUser1");
+        assertThat(memberRepository.searchColumns(condition).getUsernames())
+                .containsExactly("PrefixUser1");
+
+        condition.setUsername("prefix");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .containsExactly("prefixUser2");
+    }
+
     @Test
     void querydslPredicateExecutorTest() {
         QMember member = QMember.member;
-        memberRepository.findAll(member.age.between(20,40));
+        memberPredicateExecutor.findAll(member.age.between(20,40), PageRequest.of(0, 10));
+    }
+
+    @Test
+    void memberPredicateExecutorTest() {
+        em.persist(new Member("SafeUser1", 10));
+        em.persist(new Member("safeUser2", 20));
+        QMember member = QMember.member;
+
+        Page<Member> result = memberPredicateExecutor.findAll(
+                member.username.equalsIgnoreCase("SAFEUSER1"),
+                PageRequest.of(0, 10, Sort.by("username")));
+        assertThat(result.getContent()).extracting("username").containsExactly("SafeUser1");
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        result = memberPredicateExecutor.findAll(
+                member.username.startsWithIgnoreCase("safeuser").and(member.age.goe(20)),
+                PageRequest.of(0, 10, Sort.by("username")));
+        assertThat(result.getContent()).extracting("username").containsExactly("safeUser2");
+
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(
+                member.username.eq("SafeUser1").or(member.age.eq(20)), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsafePredicateException.class);
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.age.ne(10), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsafePredicateException.class);
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.age.in(10, 20).not(), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsafePredicateException.class);
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.age.notIn(10, 20), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsafePredicateException.class);
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.username.startsWith(""), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsafePredicateException.class);
+
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.username.contains("user"), PageRequest.of(0, 10)))
+                .isInstanceOf(UnsafePredicateException.class);
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.age.goe(10), Pageable.unpaged()))
+                .isInstanceOf(UnsafePredicateException.class);
+        assertThatThrownBy(() -> memberPredicateExecutor.findAll(member.age.goe(10), PageRequest.of(0, 10, Sort.by("team.name"))))
+                .isInstanceOf(UnsafePredicateException.class);
+    }
+
+    @Test
+    void moveMembersTest() {
+        Team from = new Team("moveFrom");
+        Team to = new Team("moveTo");
+        em.persist(from);
+        em.persist(to);
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Member m = new Member("moveMember" + i, 4000 + i, from);
+            em.persist(m);
+            members.add(m);
+        }
+        Member stay = new Member("moveMember10", 4010, to);
+        em.persist(stay);
+        em.flush();
+        QMember member = QMember.member;
+
+        //member 컬럼만 쓰는 조건. 이미 to 팀인 moveMember10 은 제외된다.
+        long moved = memberRepository.moveMembers(member.age.between(4005, 4010), to);
+        assertThat(moved).isEqualTo(5);
+        //옮긴 회원만 detach 되고 팀과 나머지 회원은 그대로 쓴다.
+        assertThat(em.contains(members.get(5))).isFalse();
+        assertThat(em.contains(members.get(0))).isTrue();
+        assertThat(em.contains(stay)).isTrue();
+        assertThat(em.contains(to)).isTrue();
+        assertThat(from.getMembers()).hasSize(5);
+        assertThat(to.getMembers()).hasSize(6);
+
+        //연관 엔티티를 따라가는 조건
+        assertThat(memberRepository.moveMembers(member.team.name.eq("moveFrom").and(member.age.lt(4002)), to))
+                .isEqualTo(2);
+        assertThat(members.get(2).getTeam()).isSameAs(from);
+
+        MemberSearchCondition moveMembers = new MemberSearchCondition();
+        moveMembers.setUsername("moveMember");
+        moveMembers.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberRepository.search(moveMembers))
+                .filteredOn(m -> m.getTeamName().equals("moveTo")).hasSize(8);
+
+        TeamStatsDto fromStats = teamStats("moveFrom");
+        TeamStatsDto toStats = teamStats("moveTo");
+        assertThat(fromStats.getMemberCount()).isEqualTo(3);
+        assertThat(fromStats.getAgeMin()).isEqualTo(4002);
+        assertThat(toStats.getMemberCount()).isEqualTo(8);
+        assertThat(toStats.getAgeMax()).isEqualTo(4010);
+    }
+
+    @Test
+    void upsertMembersTest() {
+        Team oldTeam = new Team("upsertOld");
+        Team newTeam = new Team("upsertNew");
+        em.persist(oldTeam);
+        em.persist(newTeam);
+        Member existing = new Member("upsertMember1", 5000, oldTeam);
+        em.persist(existing);
+        em.flush();
+        Long existingId = existing.getId();
+        Long version = existing.getVersion();
+
+        UpsertResult result = memberRepository.upsertMembers(Arrays.asList(
+                new MemberSyncDto("upsertMember1", 5001, newTeam.getId()),
+                new MemberSyncDto("upsertMember2", 5002, newTeam.getId()),
+                new MemberSyncDto("upsertMember3", 5003, null),
+                //같은 username 은 마지막 값을 쓴다.
+                new MemberSyncDto("upsertMember2", 5004, newTeam.getId())));
+
+        assertThat(result.getInserted()).isEqualTo(2);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(em.contains(existing)).isFalse();
+
+        Member updated = em.find(Member.class, existingId);
+        assertThat(updated.getAge()).isEqualTo(5001);
+        assertThat(updated.getTeam().getId()).isEqualTo(newTeam.getId());
+        assertThat(updated.getVersion()).isEqualTo(version + 1);
+
+        List<Member> inserted = memberRepository.findByUsername("upsertMember2");
+        assertThat(inserted).hasSize(1);
+        assertThat(inserted.get(0).getAge()).isEqualTo(5004);
+        assertThat(inserted.get(0).getUsernameLower()).isEqualTo("upsertmember2");
+        assertThat(inserted.get(0).getVersion()).isEqualTo(0L);
+        assertThat(memberRepository.findByUsername("upsertMember3").get(0).getTeam()).isNull();
+
+        //새로 받은 id 는 이후 persist 와 겹치지 않는다.
+        Member persisted = new Member("upsertMember4", 5005);
+        em.persist(persisted);
+        em.flush();
+        assertThat(persisted.getId()).isNotEqualTo(inserted.get(0).getId());
+
+        assertThat(teamStats("upsertOld").getMemberCount()).isEqualTo(0);
+        assertThat(teamStats("upsertNew").getMemberCount()).isEqualTo(2);
+        assertThat(teamStats("upsertNew").getAgeMax()).isEqualTo(5004);
+
+        //같은 username 으로 다시 보내면 모두 update 로 센다.
+        UpsertResult again = memberRepository.upsertMembers(Arrays.asList(
+                new MemberSyncDto("upsertMember2", 5006, null),
+                new MemberSyncDto("upsertMember4", 5007, newTeam.getId())));
+        assertThat(again.getInserted()).isEqualTo(0);
+        assertThat(again.getUpdated()).isEqualTo(2);
+        assertThat(memberRepository.findByUsername("upsertMember4").get(0).getId()).isEqualTo(persisted.getId());
+        assertThat(teamStats("upsertNew").getMemberCount()).isEqualTo(2);
+    }
+
+    private TeamStatsDto teamStats(String teamName) {
+        return teamRepository.findTeamStats().stream()
+                .filter(stats -> stats.getTeamName().equals(teamName))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
     }
-}
\ No newline at end of file
+}
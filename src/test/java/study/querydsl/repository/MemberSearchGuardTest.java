@@ -0,0 +1,32 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberSearchGuardTest {
+
+    MemberSearchGuard searchGuard = new MemberSearchGuard(100);
+
+    @Test
+    void probeOneRowMoreThanMax() {
+        assertThat(searchGuard.probeLimit()).isEqualTo(101);
+    }
+
+    @Test
+    void rejectInsteadOfTruncate() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        List<Integer> exact = Collections.nCopies(100, 1);
+        List<Integer> over = Collections.nCopies(101, 1);
+
+        assertThat(searchGuard.check(condition, exact)).isSameAs(exact);
+        assertThatThrownBy(() -> searchGuard.check(condition, over))
+                .isInstanceOf(SearchTooLargeException.class);
+    }
+}
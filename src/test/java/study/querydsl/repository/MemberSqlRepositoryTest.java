@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSqlRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSqlRepository memberSqlRepository;
+
+    @Test
+    void sameResultsAsJpa() {
+        Team team = new Team("sqlTeam");
+        em.persist(team);
+        for (int i = 0; i < 20; i++) {
+            em.persist(new Member("sqlMember" + i, 2000 + i, i % 2 == 0 ? team : null));
+        }
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(2005);
+        condition.setAgeLoe(2019);
+        //정렬 조건이 없으므로 순서는 비교하지 않는다.
+        assertThat(memberSqlRepository.search(condition))
+                .containsExactlyInAnyOrderElementsOf(memberRepository.search(condition));
+
+        Page<MemberTeamDto> sqlPage = memberSqlRepository.searchPageSimple(condition, PageRequest.of(1, 4));
+        Page<MemberTeamDto> jpaPage = memberRepository.searchPageSimple(condition, PageRequest.of(1, 4));
+        assertThat(sqlPage.getContent()).hasSize(4);
+        assertThat(sqlPage.getTotalElements()).isEqualTo(jpaPage.getTotalElements()).isEqualTo(15);
+
+        condition.setTeamName("sqlTeam");
+        condition.setUsername("SQLMEMBER1");
+        condition.setUsernameMatch(UsernameMatch.IGNORE_CASE_PREFIX);
+        Page<MemberTeamDto> complex = memberSqlRepository.searchPageComplex(condition, PageRequest.of(0, 10));
+        assertThat(complex.getContent()).extracting("username")
+                .containsExactlyInAnyOrder("sqlMember10", "sqlMember12", "sqlMember14", "sqlMember16", "sqlMember18");
+        assertThat(complex.getContent()).extracting("teamName").containsOnly("sqlTeam");
+    }
+
+    /**
+     * ./gradlew loadTest
+     */
+    @Tag("load")
+    @Test
+    void benchmark() {
+        Team team = new Team("benchTeam");
+        em.persist(team);
+        for (int i = 0; i < 10_000; i++) {
+            em.persist(new Member("benchMember" + i, 3000 + i % 100, team));
+        }
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("benchTeam");
+        PageRequest pageRequest = PageRequest.of(0, 1000);
+
+        for (int round = 0; round < 3; round++) {
+            long jpa = time(() -> memberRepository.searchPageComplex(condition, pageRequest));
+            long sql = time(() -> memberSqlRepository.searchPageComplex(condition, pageRequest));
+            System.out.println("round " + round + ": jpa = " + jpa + "ms, sql = " + sql + "ms");
+        }
+    }
+
+    private long time(Supplier<Page<MemberTeamDto>> query) {
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            List<MemberTeamDto> content = query.get().getContent();
+            assertThat(content).hasSize(1000);
+            em.clear();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
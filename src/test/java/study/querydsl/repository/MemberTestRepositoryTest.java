@@ -0,0 +1,126 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    void before() {
+        queryFactory = new JPAQueryFactory(em);
+        em.createQuery("delete from Member").executeUpdate();
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+    }
+
+    /**
+     * 서브쿼리 결과와 같아야 한다.
+     */
+    @Test
+    void findOldestTest() {
+        QMember memberSub = new QMember("memberSub");
+        List<Member> subQueryResult = queryFactory
+                .selectFrom(member)
+                .where(member.age.eq(
+                        JPAExpressions.select(memberSub.age.max())
+                                .from(memberSub)
+                ))
+                .fetch();
+
+        List<Member> result = memberTestRepository.findOldest();
+
+        assertThat(result).extracting("age").containsExactly(40);
+        assertThat(result).containsExactlyInAnyOrderElementsOf(subQueryResult);
+    }
+
+    @Test
+    void findAgeGoeTeamAverageTest() {
+        QMember memberSub = new QMember("memberSub");
+        List<Member> subQueryResult = queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(
+                        JPAExpressions.select(memberSub.age.avg())
+                                .from(memberSub)
+                                .where(memberSub.team.eq(member.team))
+                ))
+                .fetch();
+
+        List<Member> result = memberTestRepository.findAgeGoeTeamAverage();
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member2", "member4");
+        assertThat(result).containsExactlyInAnyOrderElementsOf(subQueryResult);
+    }
+
+    @Test
+    void findUsernameWithAverageAgeTest() {
+        List<Tuple> result = memberTestRepository.findUsernameWithAverageAge();
+
+        assertThat(result).hasSize(4);
+        assertThat(result.get(0).get(1, Double.class)).isEqualTo(25.0);
+    }
+
+    /**
+     * 팀 1000개 x 회원 1000명. 팀마다 10명만 평균 이상이 되도록 나이를 준다.
+     * 상관 서브쿼리는 행마다 같은 팀 회원을 읽으므로 팀 크기가 커지면 느려진다. 시간 변화를 확인하는 용도다.
+     * ./gradlew loadTest
+     */
+    @Tag("load")
+    @Test
+    void findAgeGoeTeamAverageBenchmark() {
+        for (int i = 0; i < 1000; i++) {
+            em.persist(new Team("avgBenchTeam" + i));
+        }
+        em.flush();
+        em.createNativeQuery(
+                "insert into member (member_id, username, username_lower, age, team_id, version)" +
+                " select 1000000000 + t.team_id * 1000 + r.x, 'avgBench' || t.team_id || '_' || r.x," +
+                " 'avgbench' || t.team_id || '_' || r.x," +
+                " case when mod(r.x, 100) = 0 then 1000 else mod(r.x, 10) end, t.team_id, 0" +
+                " from team t, system_range(1, 1000) r where t.name like 'avgBenchTeam%'")
+                .executeUpdate();
+        em.clear();
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            List<Member> result = memberTestRepository.findAgeGoeTeamAverage();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            //before() 의 member2, member4 포함
+            assertThat(result).hasSize(10_000 + 2);
+            em.clear();
+            System.out.println("round " + round + ": " + elapsed + "ms");
+        }
+    }
+}
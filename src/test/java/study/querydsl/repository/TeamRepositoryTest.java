@@ -0,0 +1,202 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.TeamStats;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void teamStatsTest() {
+        Team teamA = new Team("statsTeamA");
+        Team teamB = new Team("statsTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        //수정, 팀 변경, 삭제
+        member1.setAge(15);
+        member4.changeTeam(teamA);
+        em.remove(member3);
+
+        em.flush();
+        em.clear();
+
+        List<TeamStatsDto> result = teamRepository.findTeamStats();
+        TeamStatsDto statsA = findByName(result, "statsTeamA");
+        TeamStatsDto statsB = findByName(result, "statsTeamB");
+
+        assertThat(statsA.getMemberCount()).isEqualTo(3);
+        assertThat(statsA.getAgeSum()).isEqualTo(75);
+        assertThat(statsA.getAgeMin()).isEqualTo(15);
+        assertThat(statsA.getAgeMax()).isEqualTo(40);
+        assertThat(statsA.getAgeAvg()).isEqualTo(25);
+
+        assertThat(statsB.getMemberCount()).isEqualTo(0);
+        assertThat(statsB.getAgeMin()).isNull();
+    }
+
+    @Test
+    void staleStatsIgnoreIncrements() {
+        //가져오기처럼 벌크로 stale 만 표시된 팀. 카운터는 0 이고 min/max 는 null 이다.
+        Team team = new Team("statsImported");
+        em.persist(team);
+        em.flush();
+        em.createQuery("update Team t set t.stats.stale = true where t.id = :id")
+                .setParameter("id", team.getId())
+                .executeUpdate();
+        Member member1 = new Member("importedMember1", 10, team);
+        Member member2 = new Member("importedMember2", 20, team);
+        em.persist(member1);
+        em.persist(member2);
+        em.flush();
+
+        member1.setAge(11);
+        em.remove(member2);
+        em.flush();
+        em.clear();
+        assertThat(em.find(Team.class, team.getId()).getStats().isStale()).isTrue();
+
+        TeamStatsDto stats = findByName(teamRepository.findTeamStats(), "statsImported");
+        assertThat(stats.getMemberCount()).isEqualTo(1);
+        assertThat(stats.getAgeMin()).isEqualTo(11);
+    }
+
+    @Test
+    void memberChangesDoNotBumpTeamVersion() {
+        Team team = new Team("statsVersionTeam");
+        em.persist(team);
+        Member member = new Member("statsVersionMember", 10, team);
+        em.persist(member);
+        em.flush();
+        Long version = team.getVersion();
+
+        member.setAge(20);
+        em.persist(new Member("statsVersionMember2", 30, team));
+        em.flush();
+        em.clear();
+
+        assertThat(em.find(Team.class, team.getId()).getVersion()).isEqualTo(version);
+        TeamStatsDto stats = findByName(teamRepository.findTeamStats(), "statsVersionTeam");
+        assertThat(stats.getMemberCount()).isEqualTo(2);
+        assertThat(stats.getAgeSum()).isEqualTo(50);
+        assertThat(stats.getAgeMin()).isEqualTo(20);
+    }
+
+    /**
+     * 증분은 커밋할 때 팀마다 한번 반영되고, 롤백되면 버려진다. (커밋하므로 데이터가 남는다)
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void incrementsAreAppliedOnCommit() {
+        Long teamId = transactionTemplate.execute(status -> {
+            Team team = new Team("statsCommitTeam");
+            em.persist(team);
+            em.persist(new Member("statsCommitMember1", 10, team));
+            em.persist(new Member("statsCommitMember2", 20, team));
+            em.persist(new Member("statsCommitMember3", 30, team));
+            return team.getId();
+        });
+        TeamStats stats = transactionTemplate.execute(status -> em.find(Team.class, teamId).getStats());
+        assertThat(stats.isStale()).isFalse();
+        assertThat(stats.getMemberCount()).isEqualTo(3);
+        assertThat(stats.getAgeSum()).isEqualTo(60);
+        assertThat(stats.getAgeMin()).isEqualTo(10);
+        assertThat(stats.getAgeMax()).isEqualTo(30);
+
+        //경계값이 아닌 회원을 빼고 새 최대값을 넣으면 stale 없이 반영된다.
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = em.find(Team.class, teamId);
+            em.remove(em.createQuery("select m from Member m where m.username = :username", Member.class)
+                    .setParameter("username", "statsCommitMember2")
+                    .getSingleResult());
+            em.persist(new Member("statsCommitMember4", 40, team));
+        });
+        //롤백된 변경은 반영되지 않는다.
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("statsCommitMember5", 5, em.find(Team.class, teamId)));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        stats = transactionTemplate.execute(status -> em.find(Team.class, teamId).getStats());
+        assertThat(stats.isStale()).isFalse();
+        assertThat(stats.getMemberCount()).isEqualTo(3);
+        assertThat(stats.getAgeSum()).isEqualTo(80);
+        assertThat(stats.getAgeMin()).isEqualTo(10);
+        assertThat(stats.getAgeMax()).isEqualTo(40);
+    }
+
+    private TeamStatsDto findByName(List<TeamStatsDto> result, String teamName) {
+        return result.stream()
+                .filter(stats -> stats.getTeamName().equals(teamName))
+                .findFirst()
+                .get();
+    }
+
+    @Test
+    void teamMembersWithoutLoadingCollection() {
+        Team team = new Team("bigTeam");
+        em.persist(team);
+        for (int i = 0; i < 25; i++) {
+            em.persist(new Member("bigTeamMember" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+
+        Team findTeam = em.find(Team.class, team.getId());
+        em.persist(new Member("bigTeamMember25", 25, findTeam));
+        //changeTeam 이 컬렉션을 읽지 않고, size() 는 count 쿼리로 처리된다.
+        assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+        em.flush();
+        assertThat(findTeam.getMembers().size()).isEqualTo(26);
+        assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+
+        assertThat(teamRepository.countMembers(team.getId())).isEqualTo(26);
+
+        List<MemberTeamDto> all = new ArrayList<>();
+        Long afterId = null;
+        List<MemberTeamDto> page;
+        do {
+            page = teamRepository.findMembersAfter(team.getId(), afterId, 10);
+            all.addAll(page);
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getMemberId();
+        } while (page.size() == 10);
+        assertThat(all).hasSize(26);
+        assertThat(all).extracting(MemberTeamDto::getMemberId).isSorted().doesNotHaveDuplicates();
+        assertThat(all).extracting(MemberTeamDto::getTeamName).containsOnly("bigTeam");
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.repository.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberInvertedIndexTest {
+
+    @Test
+    void tokenize() {
+        assertThat(MemberInvertedIndex.tokenize("Member12 kim-young"))
+                .containsExactlyInAnyOrder("member12", "member", "12", "kim", "young");
+    }
+
+    @Test
+    void searchByUsernameAndTeamName() {
+        MemberInvertedIndex index = new MemberInvertedIndex();
+        index.indexTeam(1L, "Red Dragons");
+        index.indexTeam(2L, "Blue Whales");
+        index.indexMember(10L, "kim young", 1L);
+        index.indexMember(11L, "lee young", 2L);
+        index.indexMember(12L, "park", 2L);
+
+        assertThat(index.search("young", 10)).containsExactly(10L, 11L);
+        assertThat(index.search("you", 10)).containsExactly(10L, 11L);
+        assertThat(index.search("blue", 10)).containsExactly(11L, 12L);
+        assertThat(index.search("young whale", 10)).containsExactly(11L);
+        assertThat(index.search("young", 1)).containsExactly(10L);
+
+        //팀 이름 변경, 회원 삭제
+        index.indexTeam(2L, "Green");
+        index.removeMember(10L);
+        assertThat(index.search("blue", 10)).isEmpty();
+        assertThat(index.search("young", 10)).containsExactly(11L);
+    }
+}
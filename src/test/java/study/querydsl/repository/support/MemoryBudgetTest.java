@@ -0,0 +1,64 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MemoryBudget budget = new MemoryBudget(1000, registry);
+
+    @Test
+    void exceedingBudgetAbortsScope() {
+        assertThatThrownBy(() -> {
+            try (MemoryBudget.Scope scope = budget.open()) {
+                for (int i = 0; i < 20; i++) {
+                    scope.add(100);
+                }
+            }
+        }).isInstanceOf(MemoryBudgetExceededException.class)
+                .satisfies(e -> assertThat(((MemoryBudgetExceededException) e).getRows()).isEqualTo(11));
+
+        assertThat(registry.get("repository.memory.budget.exceeded").counter().count()).isEqualTo(1);
+        assertThat(registry.get("repository.result.rows").summary().max()).isEqualTo(11);
+    }
+
+    @Test
+    void releasedRowsDoNotCount() {
+        try (MemoryBudget.Scope scope = budget.open()) {
+            for (int i = 0; i < 100; i++) {
+                scope.add(100);
+                scope.release(100);
+            }
+        }
+        assertThat(registry.get("repository.result.bytes").summary().max()).isEqualTo(100);
+    }
+
+    @Test
+    void scopesShareRequestBudget() {
+        budget.beginRequest();
+        try {
+            try (MemoryBudget.Scope scope = budget.open()) {
+                scope.add(600);
+            }
+            assertThatThrownBy(() -> {
+                try (MemoryBudget.Scope scope = budget.open()) {
+                    scope.add(600);
+                }
+            }).isInstanceOf(MemoryBudgetExceededException.class);
+        } finally {
+            budget.endRequest("/test");
+        }
+        //중단된 조회는 요청 합계에 들어가지 않는다.
+        assertThat(registry.get("repository.request.bytes").tag("endpoint", "/test").summary().totalAmount())
+                .isEqualTo(600);
+
+        //요청 밖에서는 호출마다 따로 센다.
+        try (MemoryBudget.Scope scope = budget.open()) {
+            scope.add(600);
+        }
+    }
+}
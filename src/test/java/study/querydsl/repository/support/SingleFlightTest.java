@@ -0,0 +1,84 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsCollapse() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(5000);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 10;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                executions.incrementAndGet();
+                await(release);
+                return 42;
+            })));
+        }
+        //모든 호출이 대기할 때까지 기다렸다가 leader 를 끝낸다.
+        while (singleFlight.getWaitingCount() < callers - 1) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        for (Future<Integer> result : results) {
+            assertThat(result.get()).isEqualTo(42);
+        }
+        executor.shutdown();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.getExecutedCount()).isEqualTo(1);
+        assertThat(singleFlight.getCollapsedCount()).isEqualTo(callers - 1);
+        assertThat(singleFlight.getTimedOutCount()).isZero();
+        assertThat(singleFlight.getWaitingCount()).isZero();
+    }
+
+    @Test
+    void waiterRunsItselfAfterTimeout() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> slow = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            return 1;
+        }));
+        while (singleFlight.getExecutedCount() < 1) {
+            Thread.sleep(10);
+        }
+
+        Integer result = singleFlight.execute("key", () -> 2);
+        release.countDown();
+
+        assertThat(result).isEqualTo(2);
+        assertThat(slow.get()).isEqualTo(1);
+        assertThat(singleFlight.getTimedOutCount()).isEqualTo(1);
+        assertThat(singleFlight.getCollapsedCount()).isZero();
+        assertThat(singleFlight.getExecutedCount()).isEqualTo(2);
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
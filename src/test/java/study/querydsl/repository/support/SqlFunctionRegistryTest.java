@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.dsl.Expressions;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.repository.support.SqlFunctionRegistry.Dialect;
+import study.querydsl.repository.support.SqlFunctionRegistry.SqlFunction;
+import study.querydsl.repository.support.SqlFunctionRegistry.WrappedColumn;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+class SqlFunctionRegistryTest {
+
+    private static SqlFunctionRegistry registry(Dialect dialect) {
+        return new SqlFunctionRegistry(dialect)
+                .normalizedColumn(SqlFunction.LOWER, Member.class, "username", "usernameLower");
+    }
+
+    @Test
+    void findWrappedColumns() {
+        SqlFunctionRegistry registry = registry(Dialect.H2);
+
+        List<WrappedColumn> columns = registry.findWrappedColumns(member.username.lower().eq("a")
+                .and(member.username.equalsIgnoreCase("b"))
+                .or(member.age.add(1).gt(10))
+                .or(member.username.eq(Expressions.stringTemplate("function('replace', {0}, {1}, {2})",
+                        member.username, "member", "M"))));
+
+        assertThat(columns).extracting(WrappedColumn::toString).containsExactly(
+                "lower(Member.username)", "lower(Member.username)", "add(Member.age)", "replace(Member.username)");
+        assertThat(columns).extracting(WrappedColumn::isIndexed).containsOnly(false);
+        assertThat(columns.get(0).getAlternative()).isEqualTo("usernameLower");
+        assertThat(registry.findWrappedColumns(member.age.goe(10).and(member.username.startsWith("a")))).isEmpty();
+        //정규화 컬럼 비교는 함수로 감싸지 않는다.
+        assertThat(registry.findWrappedColumns(new QMember("m").usernameLower.eq("a"))).isEmpty();
+    }
+
+    @Test
+    void expressionIndexDependsOnDialect() {
+        SqlFunctionRegistry h2 = registry(Dialect.H2)
+                .expressionIndex(SqlFunction.UPPER, Member.class, "username");
+        SqlFunctionRegistry postgres = registry(Dialect.POSTGRESQL)
+                .expressionIndex(SqlFunction.UPPER, Member.class, "username");
+
+        assertThat(h2.findWrappedColumns(member.username.upper().eq("A")))
+                .extracting(WrappedColumn::isIndexed).containsExactly(false);
+        assertThat(postgres.findWrappedColumns(member.username.upper().eq("A")))
+                .extracting(WrappedColumn::isIndexed).containsExactly(true);
+        assertThat(Dialect.of("PostgreSQL")).isEqualTo(Dialect.POSTGRESQL);
+        assertThat(Dialect.of("MariaDB")).isEqualTo(Dialect.MYSQL);
+    }
+}